@@ -0,0 +1,70 @@
+package fila;
+
+// Fila implementada com um arranjo circular (ring buffer). O arranjo só é
+// realocado quando enche, dobrando de tamanho, de forma que enfileirar e
+// desenfileirar não alocam memória por elemento.
+
+public class ArrayQueue<E> implements Queue<E> {
+	protected E[] data; // arranjo circular, com capacidade potência de 2
+	protected int head; // índice do primeiro elemento
+	protected int size;
+
+	public ArrayQueue() { this(16); }
+
+	@SuppressWarnings("unchecked")
+	public ArrayQueue(int capacity) {
+		int c = 1;
+		while (c < capacity)
+			c <<= 1;
+		data = (E[]) new Object[c];
+		head = 0;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	public E front() throws EmptyQueueException {
+		if (isEmpty())
+			throw new EmptyQueueException("Queue is empty.");
+		return data[head];
+	}
+
+	public void enqueue(E elem) {
+		if (size == data.length)
+			grow();
+		data[(head + size) & (data.length - 1)] = elem;
+		size++;
+	}
+
+	public E dequeue() throws EmptyQueueException {
+		if (isEmpty())
+			throw new EmptyQueueException("Queue is empty.");
+		E temp = data[head];
+		data[head] = null;
+		head = (head + 1) & (data.length - 1);
+		size--;
+		return temp;
+	}
+
+	// Esvazia a fila mantendo o arranjo para reuso.
+	public void clear() {
+		while (size > 0)
+			dequeue();
+		head = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		E[] bigger = (E[]) new Object[data.length * 2];
+		for (int i = 0; i < size; i++)
+			bigger[i] = data[(head + i) & (data.length - 1)];
+		data = bigger;
+		head = 0;
+	}
+}
@@ -0,0 +1,6 @@
+package fila;
+
+@SuppressWarnings("serial")
+public class EmptyQueueException extends RuntimeException {
+	public EmptyQueueException(String err) {super(err);}
+}
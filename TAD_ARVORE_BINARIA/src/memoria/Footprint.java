@@ -0,0 +1,160 @@
+package memoria;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+// Estimativa do espaço ocupado por uma estrutura na heap.
+
+// O tamanho de cada objeto é calculado a partir dos seus campos, com o layout
+// da HotSpot: cabeçalho, referências comprimidas ou não, e alinhamento em 8
+// bytes. Os bytes da estrutura (a própria coleção e seus nodos) são somados
+// separadamente dos bytes dos elementos. Um elemento compartilhado por vários
+// nodos é contado uma única vez.
+
+// Os elementos são medidos rasamente: conta-se o próprio objeto e, para
+// String, o seu arranjo de caracteres, mas não os objetos referenciados por ele.
+
+public class Footprint {
+
+	// Parâmetros do layout de objetos da máquina virtual atual
+	public static final int REFERENCE = vmOption("UseCompressedOops", true) ? 4 : 8;
+	public static final int HEADER = vmOption("UseCompressedClassPointers", true) ? 12 : 16;
+	public static final int ARRAY_HEADER = HEADER + 4;
+	public static final int ALIGNMENT = 8;
+
+	// Tamanho raso das instâncias de cada classe
+	private static final ClassValue<Long> SHALLOW = new ClassValue<Long>() {
+		protected Long computeValue(Class<?> type) {
+			long bytes = HEADER;
+			for (Class<?> c = type; c != null; c = c.getSuperclass())
+				for (Field f : c.getDeclaredFields())
+					if (!Modifier.isStatic(f.getModifiers()))
+						bytes += fieldSize(f.getType());
+			return align(bytes);
+		}
+	};
+
+	private long structureBytes; // bytes da estrutura
+	private long elementBytes; // bytes dos elementos
+	private long objects; // objetos da estrutura
+	private final IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+
+	// Soma à estrutura o tamanho raso de um objeto (contado uma única vez).
+	public Footprint addStructure(Object o) {
+		if (o != null && seen.put(o, Boolean.TRUE) == null) {
+			structureBytes += shallowSize(o);
+			objects++;
+		}
+		return this;
+	}
+
+	// Soma à estrutura um número de bytes já calculado.
+	public Footprint addStructureBytes(long bytes) {
+		structureBytes += bytes;
+		return this;
+	}
+
+	// Soma aos elementos o tamanho de um elemento (contado uma única vez).
+	public Footprint addElement(Object e) {
+		if (e != null && seen.put(e, Boolean.TRUE) == null)
+			elementBytes += elementSize(e);
+		return this;
+	}
+
+	// Retorna os bytes da estrutura, sem os elementos.
+	public long structureBytes() {
+		return structureBytes;
+	}
+
+	// Retorna os bytes dos elementos.
+	public long elementBytes() {
+		return elementBytes;
+	}
+
+	// Retorna os bytes da estrutura com os elementos.
+	public long totalBytes() {
+		return structureBytes + elementBytes;
+	}
+
+	// Retorna o número de objetos da estrutura.
+	public long objects() {
+		return objects;
+	}
+
+	public String toString() {
+		return "Footprint[structure=" + structureBytes + ", elements=" + elementBytes + ", total=" + totalBytes()
+				+ ", objects=" + objects + "]";
+	}
+
+	// Retorna o tamanho raso de um objeto: cabeçalho e campos, sem seguir referências.
+	public static long shallowSize(Object o) {
+		Class<?> type = o.getClass();
+		if (!type.isArray())
+			return SHALLOW.get(type);
+		int length = Array.getLength(o);
+		return arraySize(length, fieldSize(type.getComponentType()));
+	}
+
+	// Retorna o tamanho de um arranjo com o número de posições e o tamanho de cada posição.
+	public static long arraySize(int length, int slot) {
+		return align(ARRAY_HEADER + (long) length * slot);
+	}
+
+	// Retorna os bytes alocados pela thread atual durante a execução da ação,
+	// ou -1 se a máquina virtual não oferece essa medida.
+	public static long allocatedBytes(Runnable action) {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		action.run();
+		return threads.getThreadAllocatedBytes(id) - before;
+	}
+
+	// Tamanho de um elemento: o objeto e, para String, o arranjo de caracteres.
+	private static long elementSize(Object e) {
+		long bytes = shallowSize(e);
+		if (e instanceof String) {
+			String s = (String) e;
+			boolean latin1 = true; // Strings compactas usam um byte por caractere
+			for (int i = 0; i < s.length() && latin1; i++)
+				latin1 = (s.charAt(i) < 256);
+			bytes += arraySize(latin1 ? s.length() : 2 * s.length(), 1);
+		}
+		return bytes;
+	}
+
+	private static int fieldSize(Class<?> type) {
+		if (!type.isPrimitive())
+			return REFERENCE;
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	private static boolean vmOption(String name, boolean fallback) {
+		try {
+			HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			return Boolean.parseBoolean(bean.getVMOption(name).getValue());
+		} catch (RuntimeException | LinkageError e) {
+			return fallback;
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package pilha;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Pilha encadeada segura para várias threads, sem travas (pilha de Treiber).
+// O topo é trocado com compareAndSet; um nodo nunca é alterado depois de
+// publicado, de forma que quem lê o topo enxerga uma pilha coerente.
+// size e o iterador são fracamente consistentes: refletem algum estado
+// recente da pilha, sem bloquear as demais operações.
+
+public class ConcurrentNodeStack<E> implements Stack<E>, Iterable<E> {
+	protected final AtomicReference<Node<E>> top = new AtomicReference<Node<E>>();
+	protected final AtomicInteger size = new AtomicInteger();
+
+	public int size() {
+		return size.get();
+	}
+
+	public boolean isEmpty() {
+		return (top.get() == null);
+	}
+
+	public void push(E elem) {
+		Node<E> v = new Node<E>(elem, null);
+		Node<E> t;
+		do {
+			t = top.get();
+			v.setNext(t); // ainda não publicado
+		} while (!top.compareAndSet(t, v));
+		size.incrementAndGet();
+	}
+
+	public E top() throws EmptyStackException {
+		Node<E> t = top.get();
+		if (t == null)
+			throw new EmptyStackException("Stack is empty.");
+		return t.getElement();
+	}
+
+	public E pop() throws EmptyStackException {
+		Node<E> t;
+		do {
+			t = top.get();
+			if (t == null)
+				throw new EmptyStackException("Stack is empty.");
+		} while (!top.compareAndSet(t, t.getNext()));
+		size.decrementAndGet();
+		return t.getElement();
+	}
+
+	// Retorna um iterador do topo para a base, sobre a pilha no momento da chamada.
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private Node<E> cursor = top.get();
+
+			public boolean hasNext() {
+				return (cursor != null);
+			}
+
+			public E next() throws NoSuchElementException {
+				if (cursor == null)
+					throw new NoSuchElementException("No next element");
+				E toReturn = cursor.getElement();
+				cursor = cursor.getNext();
+				return toReturn;
+			}
+		};
+	}
+}
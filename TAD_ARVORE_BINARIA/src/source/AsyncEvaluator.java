@@ -0,0 +1,139 @@
+package source;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import exceptions.BoundaryViolationException;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Avaliação assíncrona de árvores de expressão (como as de buildExpression)
+// cujas folhas podem ser variáveis de resolução lenta.
+
+// Até a profundidade fanOutDepth, as duas subárvores de cada operador são
+// avaliadas em tarefas independentes no executor dado, e os resultados são
+// combinados sem bloquear nenhuma thread (CompletableFuture.thenCombine).
+// Abaixo dessa profundidade cada subárvore é avaliada sequencialmente dentro
+// de uma única tarefa. Não há travas nem synchronized no caminho da avaliação;
+// com um executor de threads virtuais nenhuma thread portadora fica presa.
+
+// Números são lidos como em evaluateExpression; qualquer outra folha é
+// resolvida pela função resolver. Os operadores e as exceções são os de
+// evaluateExpression. Se uma subárvore falhar, o resultado final falha com a
+// mesma exceção (embrulhada em CompletionException).
+
+// As tarefas leem os nodos diretamente, sem sincronização: a árvore não deve
+// ser alterada enquanto a avaliação não terminar.
+
+public class AsyncEvaluator {
+
+	private final Executor executor;
+	private final Function<String, Double> resolver;
+	private final int fanOutDepth;
+
+	// Cria um avaliador que divide o trabalho até a profundidade fanOutDepth
+	// (0 avalia tudo em uma única tarefa).
+	public AsyncEvaluator(Executor executor, Function<String, Double> resolver, int fanOutDepth) {
+		if (fanOutDepth < 0)
+			throw new IllegalArgumentException("Profundidade negativa: " + fanOutDepth);
+		this.executor = executor;
+		this.resolver = resolver;
+		this.fanOutDepth = fanOutDepth;
+	}
+
+	// Avalia a expressão inteira.
+	public CompletableFuture<Double> evaluate(LinkedBinaryTree<String> T) {
+		return evaluate(T, T.root());
+	}
+
+	// Avalia a subárvore de v. A posição é conferida uma única vez, nesta
+	// thread; depois as tarefas só leem as ligações dos nodos, sem checkPosition.
+	public CompletableFuture<Double> evaluate(LinkedBinaryTree<String> T, Position<String> v)
+			throws InvalidPositionException {
+		return evaluate(T, T.checkPosition(v), 0);
+	}
+
+	private CompletableFuture<Double> evaluate(LinkedBinaryTree<String> T, BTPosition<String> v, int depth) {
+		BTPosition<String> l = v.getLeft(), r = v.getRight();
+		if (depth >= fanOutDepth || (l == null && r == null))
+			return CompletableFuture.supplyAsync(() -> sequential(T, v), executor);
+		String op = v.element();
+		if (!T.isOperator(op))
+			return CompletableFuture.failedFuture(new IllegalArgumentException("Operador inválido: " + op));
+		if (l == null)
+			return CompletableFuture.failedFuture(new BoundaryViolationException("No left child"));
+		CompletableFuture<Double> left = evaluate(T, l, depth + 1);
+		if (r == null) // como em evaluateExpression, só falha depois da esquerda
+			return left.thenApply(x -> {
+				throw new BoundaryViolationException("No right child");
+			});
+		CompletableFuture<Double> right = evaluate(T, r, depth + 1);
+		return left.thenCombine(right, (x, y) -> T.calculate(op, x, y));
+	}
+
+	// Estados de um operador na pilha de sequential
+	private static final int ENTER = 0, BELOW = 1, RIGHT = 2;
+
+	// Avalia uma subárvore na thread atual, em pós-ordem com uma pilha explícita
+	// e com as mesmas exceções, na mesma ordem, de evaluateExpression. Os estados
+	// e os valores ficam em arranjos primitivos, sem embrulhar cada número.
+	@SuppressWarnings("unchecked")
+	private double sequential(LinkedBinaryTree<String> T, BTPosition<String> v) {
+		BTPosition<String>[] nodes = (BTPosition<String>[]) new BTPosition<?>[16];
+		int[] states = new int[16];
+		double[] values = new double[16];
+		int top = 0, count = 0; // tamanhos das pilhas de nodos e de valores
+		nodes[top] = v;
+		states[top++] = ENTER;
+		while (top > 0) {
+			BTPosition<String> u = nodes[top - 1];
+			int state = states[top - 1];
+			BTPosition<String> next = null;
+			if (state == ENTER && u.getLeft() == null && u.getRight() == null) {
+				top--;
+				if (count == values.length)
+					values = Arrays.copyOf(values, count * 2);
+				values[count++] = leaf(u.element());
+			} else if (state == ENTER) {
+				if (!T.isOperator(u.element()))
+					throw new IllegalArgumentException("Operador inválido: " + u.element());
+				if (u.getLeft() == null)
+					throw new BoundaryViolationException("No left child");
+				states[top - 1] = BELOW;
+				next = u.getLeft();
+			} else if (state == BELOW) {
+				if (u.getRight() == null)
+					throw new BoundaryViolationException("No right child");
+				states[top - 1] = RIGHT;
+				next = u.getRight();
+			} else {
+				top--;
+				count--;
+				values[count - 1] = T.calculate(u.element(), values[count - 1], values[count]);
+			}
+			if (next != null) {
+				if (top == nodes.length) {
+					nodes = Arrays.copyOf(nodes, top * 2);
+					states = Arrays.copyOf(states, top * 2);
+				}
+				nodes[top] = next;
+				states[top++] = ENTER;
+			}
+		}
+		return values[0];
+	}
+
+	// Valor de uma folha: um número ou uma variável resolvida.
+	private double leaf(String element) {
+		try {
+			return Double.parseDouble(element);
+		} catch (NumberFormatException e) {
+			Double value = resolver.apply(element);
+			if (value == null)
+				throw new IllegalArgumentException("Valor inválido: " + element);
+			return value;
+		}
+	}
+
+}
@@ -8,6 +8,10 @@ public class BTNode<E> implements BTPosition<E>{
 	
 	private E element; // elemento armazenado neste nodo
 	private BTPosition<E> left, right, parent; // nodos adjacentes
+	private TreeOwner owner; // árvore dona deste nodo (null se o nodo foi removido)
+	private long generation; // geração da árvore em que o nodo foi validado pela última vez
+	private int subtreeSize; // número de nodos da subárvore enraizada neste nodo
+	private int subtreeHash; // hash estrutural da subárvore enraizada neste nodo
 	
 	// Construtor principal
 	public BTNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
@@ -15,6 +19,7 @@ public class BTNode<E> implements BTPosition<E>{
 	setParent(parent);
 	setLeft(left);
 	setRight(right);
+	subtreeSize = 1 + (left == null ? 0 : left.getSubtreeSize()) + (right == null ? 0 : right.getSubtreeSize());
 	}
 	
 	// Retorna o elemento armazenado nesta posição
@@ -40,5 +45,29 @@ public class BTNode<E> implements BTPosition<E>{
 	
 	// Define o pai desta posição
 	public void setParent(BTPosition<E> v) { parent = v; }
+	
+	// Retorna a árvore dona desta posição
+	public TreeOwner getOwner() { return owner; }
+	
+	// Define a árvore dona desta posição
+	public void setOwner(TreeOwner o) { owner = o; }
+	
+	// Retorna a geração em que esta posição foi validada pela última vez
+	public long getGeneration() { return generation; }
+	
+	// Define a geração em que esta posição foi validada pela última vez
+	public void setGeneration(long g) { generation = g; }
+	
+	// Retorna o número de nodos da subárvore enraizada nesta posição
+	public int getSubtreeSize() { return subtreeSize; }
+	
+	// Define o número de nodos da subárvore enraizada nesta posição
+	public void setSubtreeSize(int n) { subtreeSize = n; }
+	
+	// Retorna o hash estrutural da subárvore enraizada nesta posição
+	public int getSubtreeHash() { return subtreeHash; }
+	
+	// Define o hash estrutural da subárvore enraizada nesta posição
+	public void setSubtreeHash(int h) { subtreeHash = h; }
 
 }
\ No newline at end of file
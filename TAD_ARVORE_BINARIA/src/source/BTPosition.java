@@ -24,5 +24,29 @@ public interface BTPosition<E> extends Position<E>{
 	
 	// Define o pai desta posição
 	public void setParent(BTPosition<E> v);
+	
+	// Retorna a árvore dona desta posição
+	public TreeOwner getOwner();
+	
+	// Define a árvore dona desta posição
+	public void setOwner(TreeOwner o);
+	
+	// Retorna a geração em que esta posição foi validada pela última vez
+	public long getGeneration();
+	
+	// Define a geração em que esta posição foi validada pela última vez
+	public void setGeneration(long g);
+	
+	// Retorna o número de nodos da subárvore enraizada nesta posição
+	public int getSubtreeSize();
+	
+	// Define o número de nodos da subárvore enraizada nesta posição
+	public void setSubtreeSize(int n);
+	
+	// Retorna o hash estrutural da subárvore enraizada nesta posição
+	public int getSubtreeHash();
+	
+	// Define o hash estrutural da subárvore enraizada nesta posição
+	public void setSubtreeHash(int h);
 
 }
\ No newline at end of file
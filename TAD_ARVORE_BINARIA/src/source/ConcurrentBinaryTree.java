@@ -0,0 +1,684 @@
+package source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import exceptions.BoundaryViolationException;
+import exceptions.EmptyTreeException;
+import exceptions.InvalidPositionException;
+import exceptions.NonEmptyTreeException;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Árvore binária encadeada que aceita alterações concorrentes.
+
+// As operações locais (insertLeft, insertRight, replace e remove de um nodo que
+// não é a raiz) travam apenas as listras (stripes) dos nodos que alteram, de
+// forma que escritores em subárvores disjuntas trabalham em paralelo. Os dados
+// agregados (tamanho e hash das subárvores) são recalculados subindo até a
+// raiz, travando um nodo de cada vez: cada nodo é recalculado depois dos seus
+// filhos, então o último escritor a passar por ele deixa o valor correto.
+
+// As operações que mexem na árvore inteira (addRoot, attach, graft, detach,
+// rotações e a remoção da raiz) usam o modo exclusivo de um StampedLock; as
+// operações locais usam o modo compartilhado. A navegação (left, right, parent,
+// ...) lê cada ligação sob a listra do nodo.
+
+// As consultas que percorrem vários nodos (select, rank, countInRange,
+// positions, diff, copy, forEachLevel, ...) também usam o modo compartilhado,
+// sem travar listras: cada escritor local conta em activeLocal enquanto altera
+// a árvore e incrementa localVersion ao terminar. Se algum escritor local
+// estava ativo ou terminou durante a consulta, ela é refeita; depois de
+// algumas tentativas a consulta é feita no modo exclusivo. Assim o resultado
+// sempre corresponde a uma fotografia coerente da árvore. A função de copy
+// pode, por isso, ser aplicada mais de uma vez ao mesmo elemento.
+
+// diff e structurallyEquals só protegem esta árvore: a outra não deve ser
+// alterada durante a comparação. As visões (subtreeView, mapView) leem os
+// nodos sem nenhuma sincronização e só devem ser usadas enquanto não houver
+// escritores.
+
+// O tamanho é mantido em um LongAdder, sem ponto de contenção entre escritores.
+
+public class ConcurrentBinaryTree<E> extends LinkedBinaryTree<E> {
+
+	private static final int STRIPES = 1024; // potência de 2
+
+	private final StampedLock treeLock = new StampedLock();
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	private final LongAdder count = new LongAdder();
+	private final AtomicInteger localMods = new AtomicInteger(); // alterações feitas no modo compartilhado
+	private final AtomicInteger activeLocal = new AtomicInteger(); // escritores locais em andamento
+	private final AtomicLong localVersion = new AtomicLong(); // escritores locais que já terminaram
+	private final ReentrantLock revalidation = new ReentrantLock(); // caminho lento de checkPosition
+	private volatile Thread writer; // thread no modo exclusivo, se houver
+	private volatile boolean cacheTraversals;
+
+	// Cria uma árvore concorrente vazia.
+	public ConcurrentBinaryTree() {
+		super();
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	public int size() {
+		return count.intValue();
+	}
+
+	public boolean isEmpty() {
+		return (count.sum() == 0);
+	}
+
+	public int modCount() {
+		return super.modCount() + localMods.get();
+	}
+
+	public Position<E> root() throws EmptyTreeException {
+		long stamp = enter();
+		try {
+			return super.root();
+		} finally {
+			exit(stamp);
+		}
+	}
+
+	// Métodos de navegação: cada ligação é lida sob a listra do nodo
+
+	public Position<E> left(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> w = link(v, LEFT);
+		if (w == null)
+			throw new BoundaryViolationException("No left child");
+		return w;
+	}
+
+	public Position<E> right(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> w = link(v, RIGHT);
+		if (w == null)
+			throw new BoundaryViolationException("No right child");
+		return w;
+	}
+
+	public Position<E> parent(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> w = link(v, PARENT);
+		if (w == null)
+			throw new BoundaryViolationException("No parent");
+		return w;
+	}
+
+	public boolean hasLeft(Position<E> v) throws InvalidPositionException {
+		return (link(v, LEFT) != null);
+	}
+
+	public boolean hasRight(Position<E> v) throws InvalidPositionException {
+		return (link(v, RIGHT) != null);
+	}
+
+	public boolean isInternal(Position<E> v) throws InvalidPositionException {
+		long stamp = enter();
+		try {
+			BTPosition<E> vv = checkPosition(v);
+			ReentrantLock lock = lockLive(vv);
+			try {
+				return (vv.getLeft() != null || vv.getRight() != null);
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			exit(stamp);
+		}
+	}
+
+	// Métodos de atualização locais
+
+	public Position<E> insertLeft(Position<E> v, E e) throws InvalidPositionException {
+		return insert(v, e, true);
+	}
+
+	public Position<E> insertRight(Position<E> v, E e) throws InvalidPositionException {
+		return insert(v, e, false);
+	}
+
+	public E replace(Position<E> v, E o) throws InvalidPositionException {
+		long stamp = enter();
+		beginLocal();
+		try {
+			BTPosition<E> vv = checkPosition(v);
+			E old;
+			ReentrantLock lock = lockLive(vv);
+			try {
+				old = vv.element();
+				vv.setElement(o);
+			} finally {
+				lock.unlock();
+			}
+			updatePath(vv);
+			return old;
+		} finally {
+			endLocal();
+			exit(stamp);
+		}
+	}
+
+	// Remove um nodo. Para um nodo com zero ou um filho, as listras do pai, do
+	// nodo e do filho são travadas em ordem crescente; se alguma ligação mudar
+	// antes disso, a operação recomeça. A raiz e os nodos com dois filhos são
+	// removidos no modo exclusivo.
+	public E remove(Position<E> v) throws InvalidPositionException {
+		long stamp = enter();
+		beginLocal();
+		try {
+			BTPosition<E> vv = checkPosition(v);
+			while (true) {
+				BTPosition<E> uu = vv.getParent();
+				BTPosition<E> ww = (vv.getLeft() != null) ? vv.getLeft() : vv.getRight();
+				if (uu == null)
+					break; // v é (ou era) a raiz
+				ReentrantLock[] locks = lockAll(uu, vv, ww);
+				try {
+					if (vv.getOwner() == null)
+						throw new InvalidPositionException("The position was removed from the tree");
+					if (vv.getParent() != uu || ww != ((vv.getLeft() != null) ? vv.getLeft() : vv.getRight()))
+						continue; // as ligações mudaram: tenta de novo
+					if (vv.getLeft() != null && vv.getRight() != null)
+						break; // dois filhos: o sucessor é religado no modo exclusivo
+					if (vv == uu.getLeft())
+						uu.setLeft(ww);
+					else
+						uu.setRight(ww);
+					if (ww != null)
+						ww.setParent(uu);
+					vv.setOwner(null);
+					vv.setParent(null);
+					vv.setLeft(null);
+					vv.setRight(null);
+				} finally {
+					for (ReentrantLock lock : locks)
+						if (lock != null)
+							lock.unlock();
+				}
+				updatePath(uu);
+				count.decrement();
+				localMods.incrementAndGet();
+				return vv.element();
+			}
+		} finally {
+			endLocal();
+			exit(stamp);
+		}
+		return exclusive(() -> super.remove(v));
+	}
+
+	// Métodos de atualização exclusivos
+
+	public Position<E> addRoot(E e) throws NonEmptyTreeException {
+		return exclusive(() -> super.addRoot(e));
+	}
+
+	public void attach(Position<E> v, BinaryTree<E> T1, BinaryTree<E> T2) throws InvalidPositionException {
+		exclusive(() -> {
+			super.attach(v, T1, T2);
+			return null;
+		});
+	}
+
+	public void graft(PositionList<Position<E>> nodes, PositionList<BinaryTree<E>> lefts,
+			PositionList<BinaryTree<E>> rights) throws InvalidPositionException {
+		exclusive(() -> {
+			super.graft(nodes, lefts, rights);
+			return null;
+		});
+	}
+
+	public LinkedBinaryTree<E> detachLeft(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return exclusive(() -> super.detachLeft(v));
+	}
+
+	public LinkedBinaryTree<E> detachRight(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return exclusive(() -> super.detachRight(v));
+	}
+
+	public Position<E> rotateLeft(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return exclusive(() -> super.rotateLeft(v));
+	}
+
+	public Position<E> rotateRight(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return exclusive(() -> super.rotateRight(v));
+	}
+
+	public Position<E> restructure(Position<E> x) throws InvalidPositionException, BoundaryViolationException {
+		return exclusive(() -> super.restructure(x));
+	}
+
+	// O lote inteiro é aplicado no modo exclusivo: os leitores veem a árvore
+	// antes ou depois do lote, nunca no meio.
+	protected void applyBatch(TreeBatch<E> batch) throws InvalidPositionException {
+		exclusive(() -> {
+			super.applyBatch(batch);
+			return null;
+		});
+	}
+
+	// Consultas sobre uma fotografia coerente da árvore
+
+	// A visão é criada no modo compartilhado, mas as suas leituras não são sincronizadas.
+	public SubtreeView<E> subtreeView(Position<E> v) throws InvalidPositionException {
+		long stamp = enter();
+		try {
+			return super.subtreeView(v);
+		} finally {
+			exit(stamp);
+		}
+	}
+
+	public boolean isRoot(Position<E> v) throws EmptyTreeException, InvalidPositionException {
+		return consistent(() -> checkPosition(v) == root);
+	}
+
+	public Position<E> sibling(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return consistent(() -> super.sibling(v));
+	}
+
+	public int subtreeSize(Position<E> v) throws InvalidPositionException {
+		return consistent(() -> super.subtreeSize(v));
+	}
+
+	public int subtreeHash(Position<E> v) throws InvalidPositionException {
+		return consistent(() -> super.subtreeHash(v));
+	}
+
+	public int structuralHash() {
+		return consistent(() -> super.structuralHash());
+	}
+
+	public Position<E> select(int k) throws BoundaryViolationException {
+		return consistent(() -> super.select(k));
+	}
+
+	public int rank(Position<E> v) throws InvalidPositionException {
+		return consistent(() -> super.rank(v));
+	}
+
+	public int rank(E key, Comparator<? super E> c) {
+		return consistent(() -> super.rank(key, c));
+	}
+
+	public int countInRange(E lo, E hi, Comparator<? super E> c) {
+		return consistent(() -> super.countInRange(lo, hi, c));
+	}
+
+	public boolean structurallyEquals(LinkedBinaryTree<E> other) {
+		return consistent(() -> super.structurallyEquals(other));
+	}
+
+	public PositionList<Position<E>> diff(LinkedBinaryTree<E> other, boolean exact) {
+		return consistent(() -> super.diff(other, exact));
+	}
+
+	public <F> LinkedBinaryTree<F> copy(Function<? super E, ? extends F> f, boolean parallel) {
+		return consistent(() -> (root == null) ? new LinkedBinaryTree<F>() : super.copySubtree(root, f, parallel));
+	}
+
+	public <F> LinkedBinaryTree<F> copySubtree(Position<E> v, Function<? super E, ? extends F> f, boolean parallel)
+			throws InvalidPositionException {
+		return consistent(() -> super.copySubtree(v, f, parallel));
+	}
+
+	// Com o cache ligado, as fotografias são montadas no modo exclusivo, que é o
+	// único em que os campos do cache são escritos.
+	public void setTraversalCache(boolean enabled) {
+		exclusive(() -> {
+			super.setTraversalCache(enabled);
+			return null;
+		});
+		cacheTraversals = enabled;
+	}
+
+	public Iterable<Position<E>> positions() {
+		if (cacheTraversals)
+			return exclusive(() -> super.positions());
+		return consistent(() -> toList(traversal(false)));
+	}
+
+	public Iterable<Position<E>> positionsInorder() {
+		if (cacheTraversals)
+			return exclusive(() -> super.positionsInorder());
+		return consistent(() -> toList(traversal(true)));
+	}
+
+	@SuppressWarnings("unchecked")
+	public Iterator<E> iterator() {
+		if (cacheTraversals)
+			return exclusive(() -> super.iterator());
+		return consistent(() -> {
+			PositionList<E> elements = new NodePositionList<E>();
+			for (Object v : traversal(false))
+				elements.addLast(((BTPosition<E>) v).element());
+			return elements.iterator();
+		});
+	}
+
+	// Os nodos são produzidos a partir de uma fotografia, e não sob demanda.
+	public Iterable<Position<E>> positionsLevelOrder() {
+		return consistent(() -> {
+			PositionList<Position<E>> positions = new NodePositionList<Position<E>>();
+			for (ArrayList<BTPosition<E>> level : levels())
+				for (BTPosition<E> v : level)
+					positions.addLast(v);
+			return positions;
+		});
+	}
+
+	// O visitante é chamado fora da trava, sobre uma fotografia dos níveis, e
+	// pode navegar ou alterar a árvore.
+	public void forEachLevel(LevelVisitor<E> visitor) {
+		ArrayList<ArrayList<BTPosition<E>>> levels = consistent(() -> levels());
+		for (int depth = 0; depth < levels.size(); depth++) {
+			visitor.beginLevel(depth);
+			for (BTPosition<E> v : levels.get(depth))
+				visitor.visit(depth, v);
+			visitor.endLevel(depth);
+		}
+	}
+
+	// Recalcula os dados agregados de v até a raiz, travando um nodo de cada vez.
+	// Se o caminho chegar a um nodo removido, quem o removeu recalcula o resto.
+	protected void updatePath(BTPosition<E> v) {
+		BTPosition<E> u = v;
+		while (u != null) {
+			ReentrantLock lock = stripe(u);
+			lock.lock();
+			try {
+				if (u.getOwner() == null)
+					return;
+				refresh(u);
+				u = u.getParent();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	// Os nodos transferidos saem também da contagem desta árvore.
+	protected void moveTo(LinkedBinaryTree<E> target) {
+		super.moveTo(target);
+		count.reset();
+	}
+
+	protected LinkedBinaryTree<E> detach(BTPosition<E> parent, BTPosition<E> ww) {
+		LinkedBinaryTree<E> t = super.detach(parent, ww);
+		if (t instanceof ConcurrentBinaryTree)
+			((ConcurrentBinaryTree<E>) t).count.add(t.size);
+		return t;
+	}
+
+	// Cria uma árvore concorrente vazia
+	protected LinkedBinaryTree<E> newTree() {
+		return new ConcurrentBinaryTree<E>();
+	}
+
+	// Confere a posição lendo os campos do nodo sob a sua listra. O caminho lento
+	// (nodo de uma árvore conectada por attach, ou que ficou de fora de um
+	// detach) é serializado por revalidation, que também protege a compressão
+	// de caminho do TreeOwner, e sobe pelos pais travando um nodo de cada vez.
+	// Quem chama já está no modo compartilhado ou no exclusivo.
+	@SuppressWarnings("unchecked")
+	protected BTPosition<E> checkPosition(Position<E> v) throws InvalidPositionException {
+		if (writer == Thread.currentThread())
+			return super.checkPosition(v);
+		if (v == null || !(v instanceof BTPosition))
+			throw new InvalidPositionException("The position is invalid");
+		BTPosition<E> vv = (BTPosition<E>) v;
+		ReentrantLock lock = stripe(vv);
+		lock.lock();
+		try {
+			if (vv.getGeneration() == generation && vv.getOwner() == owner)
+				return vv;
+		} finally {
+			lock.unlock();
+		}
+		revalidation.lock();
+		try {
+			lock = lockLive(vv);
+			try {
+				if (vv.getOwner().resolve() != owner.resolve())
+					throw new InvalidPositionException("The position belongs to another tree");
+			} finally {
+				lock.unlock();
+			}
+			BTPosition<E> top = vv; // mesma família: confere se o nodo ainda está nesta árvore
+			while (true) {
+				BTPosition<E> p;
+				boolean removed;
+				lock = stripe(top);
+				lock.lock();
+				try {
+					removed = (top.getOwner() == null);
+					p = top.getParent();
+				} finally {
+					lock.unlock();
+				}
+				if (removed) {
+					if (top == vv)
+						throw new InvalidPositionException("The position was removed from the tree");
+					top = vv; // um ancestral foi removido no caminho: recomeça
+					continue;
+				}
+				if (p == null)
+					break;
+				top = p;
+			}
+			if (top != root)
+				throw new InvalidPositionException("The position belongs to another tree");
+			lock = lockLive(vv);
+			try {
+				vv.setOwner(owner);
+				vv.setGeneration(generation);
+			} finally {
+				lock.unlock();
+			}
+			return vv;
+		} finally {
+			revalidation.unlock();
+		}
+	}
+
+	// Métodos auxiliares
+
+	private static final int LEFT = 0, RIGHT = 1, PARENT = 2;
+
+	// Lê uma ligação de v sob a listra de v.
+	private BTPosition<E> link(Position<E> v, int which) {
+		long stamp = enter();
+		try {
+			BTPosition<E> vv = checkPosition(v);
+			ReentrantLock lock = lockLive(vv);
+			try {
+				return (which == LEFT) ? vv.getLeft() : (which == RIGHT) ? vv.getRight() : vv.getParent();
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			exit(stamp);
+		}
+	}
+
+	private Position<E> insert(Position<E> v, E e, boolean left) throws InvalidPositionException {
+		long stamp = enter();
+		beginLocal();
+		try {
+			BTPosition<E> vv = checkPosition(v);
+			BTPosition<E> ww;
+			ReentrantLock lock = lockLive(vv);
+			try {
+				if ((left ? vv.getLeft() : vv.getRight()) != null)
+					throw new InvalidPositionException(left ? "Node already has a left child"
+							: "Node already has a right child");
+				ww = createNode(e, vv, null, null);
+				if (left)
+					vv.setLeft(ww);
+				else
+					vv.setRight(ww);
+			} finally {
+				lock.unlock();
+			}
+			updatePath(vv);
+			count.increment();
+			localMods.incrementAndGet();
+			return ww;
+		} finally {
+			endLocal();
+			exit(stamp);
+		}
+	}
+
+	// Executa uma consulta no modo compartilhado e confere que nenhum escritor
+	// local alterou a árvore enquanto ela era feita; se algum alterou, tenta de
+	// novo. Depois de CONSISTENT_TRIES tentativas, usa o modo exclusivo. A
+	// consulta não pode chamar métodos que entram no modo compartilhado.
+	private <T> T consistent(Supplier<T> op) {
+		if (writer == Thread.currentThread())
+			return op.get();
+		for (int i = 0; i < CONSISTENT_TRIES; i++) {
+			long stamp = treeLock.readLock();
+			try {
+				long version = localVersion.get();
+				if (activeLocal.get() == 0) {
+					T result;
+					try {
+						result = op.get();
+					} catch (RuntimeException e) {
+						if (quiet(version))
+							throw e;
+						continue; // a exceção pode vir de uma leitura incoerente
+					}
+					if (quiet(version))
+						return result;
+				}
+			} finally {
+				treeLock.unlockRead(stamp);
+			}
+			Thread.onSpinWait();
+		}
+		return exclusive(op);
+	}
+
+	private static final int CONSISTENT_TRIES = 4;
+
+	// Retorna se nenhum escritor local está ativo nem terminou desde version.
+	private boolean quiet(long version) {
+		return (activeLocal.get() == 0 && localVersion.get() == version);
+	}
+
+	private void beginLocal() {
+		activeLocal.incrementAndGet();
+	}
+
+	private void endLocal() {
+		localVersion.incrementAndGet();
+		activeLocal.decrementAndGet();
+	}
+
+	// Agrupa os nodos da árvore por nível, lendo as ligações diretamente.
+	private ArrayList<ArrayList<BTPosition<E>>> levels() {
+		ArrayList<ArrayList<BTPosition<E>>> levels = new ArrayList<ArrayList<BTPosition<E>>>();
+		ArrayList<BTPosition<E>> level = new ArrayList<BTPosition<E>>();
+		if (root != null)
+			level.add(root);
+		while (!level.isEmpty()) {
+			levels.add(level);
+			ArrayList<BTPosition<E>> next = new ArrayList<BTPosition<E>>();
+			for (BTPosition<E> v : level) {
+				if (v.getLeft() != null)
+					next.add(v.getLeft());
+				if (v.getRight() != null)
+					next.add(v.getRight());
+			}
+			level = next;
+		}
+		return levels;
+	}
+
+	@SuppressWarnings("unchecked")
+	private PositionList<Position<E>> toList(Object[] nodes) {
+		PositionList<Position<E>> positions = new NodePositionList<Position<E>>();
+		for (Object v : nodes)
+			positions.addLast((Position<E>) v);
+		return positions;
+	}
+
+	// Entra no modo compartilhado, a não ser que a thread já esteja no modo
+	// exclusivo (o StampedLock não é reentrante). Retorna 0 nesse caso.
+	private long enter() {
+		return (writer == Thread.currentThread()) ? 0L : treeLock.readLock();
+	}
+
+	private void exit(long stamp) {
+		if (stamp != 0L)
+			treeLock.unlockRead(stamp);
+	}
+
+	// Executa a operação sozinho na árvore, com o campo size sincronizado com o contador.
+	private <T> T exclusive(Supplier<T> op) {
+		if (writer == Thread.currentThread())
+			return op.get();
+		long stamp = treeLock.writeLock();
+		writer = Thread.currentThread();
+		try {
+			size = count.intValue();
+			try {
+				return op.get();
+			} finally {
+				count.reset();
+				count.add(size);
+			}
+		} finally {
+			writer = null;
+			treeLock.unlockWrite(stamp);
+		}
+	}
+
+	// Trava a listra de um nodo, conferindo que ele não foi removido nesse meio tempo.
+	private ReentrantLock lockLive(BTPosition<E> v) {
+		ReentrantLock lock = stripe(v);
+		lock.lock();
+		if (v.getOwner() == null) {
+			lock.unlock();
+			throw new InvalidPositionException("The position was removed from the tree");
+		}
+		return lock;
+	}
+
+	// Trava as listras dos nodos dados (ignorando null e repetições) em ordem crescente.
+	private ReentrantLock[] lockAll(BTPosition<E> a, BTPosition<E> b, BTPosition<E> c) {
+		int[] ids = { stripeIndex(a), stripeIndex(b), stripeIndex(c) };
+		Arrays.sort(ids);
+		ReentrantLock[] locks = new ReentrantLock[3];
+		for (int i = 0; i < 3; i++)
+			if (ids[i] >= 0 && (i == 0 || ids[i] != ids[i - 1])) {
+				locks[i] = stripes[ids[i]];
+				locks[i].lock();
+			}
+		return locks;
+	}
+
+	private ReentrantLock stripe(BTPosition<E> v) {
+		return stripes[stripeIndex(v)];
+	}
+
+	private static int stripeIndex(BTPosition<?> v) {
+		if (v == null)
+			return -1;
+		int h = System.identityHashCode(v);
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+}
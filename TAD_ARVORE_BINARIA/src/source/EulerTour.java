@@ -0,0 +1,184 @@
+package source;
+
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Gabarito (template method) do caminhamento de Euler em uma árvore binária.
+
+// Cada nodo interno é visitado três vezes: pela esquerda (antes da subárvore da
+// esquerda), por baixo (entre as duas subárvores) e pela direita (depois da
+// subárvore da direita). Nodos externos recebem uma única visita. As subclasses
+// redefinem os ganchos e combinam os resultados das subárvores através de um
+// TourResult.
+
+// O caminhamento não é recursivo: usa uma pilha explícita que é mantida entre
+// execuções, de forma que um mesmo objeto pode ser executado várias vezes sem
+// alocar memória por nodo.
+
+public abstract class EulerTour<E, R> {
+
+	// Resultados parciais de um nodo durante o caminhamento.
+	public static class TourResult<R> {
+		public R left; // resultado da subárvore da esquerda
+		public R right; // resultado da subárvore da direita
+		public R out; // resultado deste nodo
+	}
+
+	// Estados de um nodo na pilha
+	private static final int ENTER = 0, BELOW = 1, RIGHT = 2;
+
+	protected BinaryTree<E> tree; // árvore sendo percorrida
+
+	private Position<E>[] nodes; // pilha explícita, reaproveitada entre execuções
+	private int[] states;
+	private boolean[] pruned;
+	private TourResult<R>[] results;
+	private int top; // tamanho atual da pilha
+	private boolean stopped;
+	private R stopResult;
+
+	@SuppressWarnings("unchecked")
+	public EulerTour() {
+		nodes = (Position<E>[]) new Position<?>[16];
+		states = new int[16];
+		pruned = new boolean[16];
+		results = (TourResult<R>[]) new TourResult<?>[16];
+	}
+
+	// Executa o caminhamento a partir da raiz de T, retornando o resultado da
+	// raiz (ou null se a árvore estiver vazia).
+	public R execute(BinaryTree<E> T) {
+		if (T.isEmpty())
+			return null;
+		return execute(T, T.root());
+	}
+
+	// Executa o caminhamento sobre a subárvore de v em T.
+	public R execute(BinaryTree<E> T, Position<E> v) throws InvalidPositionException {
+		tree = T;
+		stopped = false;
+		stopResult = null;
+		top = 0;
+		try {
+			return tour(v);
+		} finally {
+			while (top > 0)
+				nodes[--top] = null; // não retém nodos após a execução
+		}
+	}
+
+	// Ganchos redefinidos pelas subclasses
+
+	// Visita um nodo externo.
+	protected void visitExternal(Position<E> v, TourResult<R> r) { }
+
+	// Visita um nodo interno antes de sua subárvore da esquerda.
+	protected void visitLeft(Position<E> v, TourResult<R> r) { }
+
+	// Visita um nodo interno entre suas duas subárvores.
+	protected void visitBelow(Position<E> v, TourResult<R> r) { }
+
+	// Visita um nodo interno depois de sua subárvore da direita.
+	protected void visitRight(Position<E> v, TourResult<R> r) { }
+
+	// Pode ser chamado por um gancho para não descer nas subárvores ainda não
+	// visitadas do nodo atual. O resultado delas fica null.
+	protected void prune() {
+		pruned[top - 1] = true;
+	}
+
+	// Pode ser chamado por um gancho para encerrar o caminhamento, fazendo
+	// execute retornar o resultado dado.
+	protected void stop(R result) {
+		stopped = true;
+		stopResult = result;
+	}
+
+	// Motor do caminhamento: simula a recursão com a pilha explícita.
+	private R tour(Position<E> start) {
+		push(start);
+		R out = null;
+		while (top > 0) {
+			int i = top - 1;
+			Position<E> v = nodes[i];
+			TourResult<R> r = results[i];
+			switch (states[i]) {
+			case ENTER:
+				if (!tree.hasLeft(v) && !tree.hasRight(v)) {
+					visitExternal(v, r);
+					if (stopped)
+						return stopResult;
+					out = pop();
+					break;
+				}
+				visitLeft(v, r);
+				if (stopped)
+					return stopResult;
+				states[i] = BELOW;
+				if (!pruned[i] && tree.hasLeft(v))
+					push(tree.left(v));
+				break;
+			case BELOW:
+				visitBelow(v, r);
+				if (stopped)
+					return stopResult;
+				states[i] = RIGHT;
+				if (!pruned[i] && tree.hasRight(v))
+					push(tree.right(v));
+				break;
+			default:
+				visitRight(v, r);
+				if (stopped)
+					return stopResult;
+				out = pop();
+			}
+		}
+		return out;
+	}
+
+	// Empilha um nodo, reaproveitando o TourResult da mesma profundidade.
+	private void push(Position<E> v) {
+		if (top == nodes.length)
+			grow();
+		TourResult<R> r = results[top];
+		if (r == null)
+			results[top] = r = new TourResult<R>();
+		r.left = r.right = r.out = null;
+		nodes[top] = v;
+		states[top] = ENTER;
+		pruned[top] = false;
+		top++;
+	}
+
+	// Desempilha o nodo do topo, entregando seu resultado ao pai.
+	private R pop() {
+		top--;
+		nodes[top] = null;
+		R out = results[top].out;
+		if (top > 0) {
+			if (states[top - 1] == BELOW) // o filho era da esquerda
+				results[top - 1].left = out;
+			else
+				results[top - 1].right = out;
+		}
+		return out;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		int n = nodes.length * 2;
+		Position<E>[] newNodes = (Position<E>[]) new Position<?>[n];
+		int[] newStates = new int[n];
+		boolean[] newPruned = new boolean[n];
+		TourResult<R>[] newResults = (TourResult<R>[]) new TourResult<?>[n];
+		System.arraycopy(nodes, 0, newNodes, 0, top);
+		System.arraycopy(states, 0, newStates, 0, top);
+		System.arraycopy(pruned, 0, newPruned, 0, top);
+		System.arraycopy(results, 0, newResults, 0, top);
+		nodes = newNodes;
+		states = newStates;
+		pruned = newPruned;
+		results = newResults;
+	}
+
+}
@@ -0,0 +1,31 @@
+package source;
+
+// Nodo de árvore de expressão que guarda o último valor calculado da sua
+// subárvore. O valor só é confiável enquanto o nodo não for marcado como sujo.
+
+public class ExpressionNode extends BTNode<String> {
+
+	private double value; // último valor calculado da subárvore
+	private boolean dirty = true; // indica se o valor precisa ser recalculado
+
+	// Construtor principal
+	public ExpressionNode(String element, BTPosition<String> parent, BTPosition<String> left, BTPosition<String> right) {
+		super(element, parent, left, right);
+	}
+
+	// Retorna o último valor calculado
+	public double getValue() { return value; }
+
+	// Guarda o valor calculado, marcando o nodo como limpo
+	public void setValue(double v) {
+		value = v;
+		dirty = false;
+	}
+
+	// Retorna se o valor precisa ser recalculado
+	public boolean isDirty() { return dirty; }
+
+	// Marca o valor como desatualizado
+	public void invalidate() { dirty = true; }
+
+}
@@ -0,0 +1,104 @@
+package source;
+
+import java.util.ArrayDeque;
+import exceptions.BoundaryViolationException;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Árvore de expressão com avaliação incremental. Cada nodo (ExpressionNode)
+// guarda o valor da sua subárvore e uma marca de sujo. Toda atualização já
+// recalcula os dados agregados do nodo alterado e dos seus ancestrais
+// (updatePath), e é nesse mesmo caminho que os valores são invalidados. Assim,
+// depois de trocar uma folha com replace, a nova avaliação só recalcula os
+// O(profundidade) nodos sujos e reaproveita o resto.
+
+// O resultado é sempre o mesmo de evaluateExpression, inclusive as exceções.
+
+public class ExpressionTree extends LinkedBinaryTree<String> {
+
+	// Cria uma árvore de expressão vazia.
+	public ExpressionTree() {
+		super();
+	}
+
+	// Monta uma árvore de expressão a partir dos símbolos, como buildExpression.
+	public static ExpressionTree build(String[] expression) {
+		return (ExpressionTree) buildExpression(expression, ExpressionTree::new);
+	}
+
+	// Avalia a expressão inteira.
+	public double evaluate() {
+		return evaluate(root());
+	}
+
+	// Avalia a subárvore de v, recalculando apenas os nodos sujos. O
+	// caminhamento pós-ordem é iterativo e não desce em subárvores limpas.
+	public double evaluate(Position<String> v) throws InvalidPositionException {
+		ExpressionNode start = node(checkPosition(v));
+		if (!start.isDirty())
+			return start.getValue();
+		ArrayDeque<ExpressionNode> stack = new ArrayDeque<ExpressionNode>();
+		stack.push(start);
+		while (!stack.isEmpty()) {
+			ExpressionNode u = stack.peek();
+			BTPosition<String> l = u.getLeft();
+			BTPosition<String> r = u.getRight();
+			if (l == null && r == null) {
+				u.setValue(value(u.element()));
+				stack.pop();
+				continue;
+			}
+			if (!isOperator(u.element()))
+				throw new IllegalArgumentException("Operador inválido: " + u.element());
+			if (l == null)
+				throw new BoundaryViolationException("No left child");
+			ExpressionNode ln = node(l);
+			if (ln.isDirty()) { // a esquerda é avaliada antes de conferir a direita
+				stack.push(ln);
+				continue;
+			}
+			if (r == null)
+				throw new BoundaryViolationException("No right child");
+			ExpressionNode rn = node(r);
+			if (rn.isDirty()) {
+				stack.push(rn);
+			} else {
+				u.setValue(calculate(u.element(), ln.getValue(), rn.getValue()));
+				stack.pop();
+			}
+		}
+		return start.getValue();
+	}
+
+	// Além dos dados agregados, invalida o valor guardado no nodo. Como
+	// updatePath chama este método do nodo alterado até a raiz, só o caminho
+	// afetado fica sujo.
+	protected void refresh(BTPosition<String> v) {
+		super.refresh(v);
+		node(v).invalidate();
+	}
+
+	// Só aceita árvores de expressão, cujos nodos guardam valores.
+	protected LinkedBinaryTree<String> checkTree(BinaryTree<String> T) throws InvalidPositionException {
+		LinkedBinaryTree<String> t = super.checkTree(T);
+		if (!(t instanceof ExpressionTree))
+			throw new InvalidPositionException("The tree is not an expression tree");
+		return t;
+	}
+
+	// Cria um novo nodo de expressão
+	protected BTPosition<String> createNode(String element, BTPosition<String> parent, BTPosition<String> left,
+			BTPosition<String> right) {
+		return initNode(new ExpressionNode(element, parent, left, right));
+	}
+
+	// Cria uma árvore de expressão vazia
+	protected LinkedBinaryTree<String> newTree() {
+		return new ExpressionTree();
+	}
+
+	private ExpressionNode node(BTPosition<String> v) {
+		return (ExpressionNode) v;
+	}
+
+}
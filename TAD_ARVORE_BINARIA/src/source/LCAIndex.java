@@ -0,0 +1,161 @@
+package source;
+
+import java.util.IdentityHashMap;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Índice para consultas de ancestral comum mais próximo (LCA) em uma árvore
+// binária. A construção faz um caminhamento de Euler iterativo e monta uma
+// sparse table sobre as profundidades da sequência de Euler, em O(n log n).
+// Depois disso lca, depth, distance e isAncestor respondem em O(1).
+
+// Se a árvore for uma LinkedBinaryTree, o índice compara o seu modCount antes
+// de cada consulta e é reconstruído automaticamente quando a estrutura muda.
+
+public class LCAIndex<E> {
+
+	protected BinaryTree<E> tree;
+	protected int builtAt; // modCount da árvore na última construção
+
+	private IdentityHashMap<Position<E>, Integer> index; // posição -> número do nodo
+	private Position<E>[] nodes; // nodos em ordem prefixada
+	private int[] depth; // profundidade de cada nodo
+	private int[] first, last; // primeira e última ocorrência na sequência de Euler
+	private int[][] sparse; // sparse[k][i]: nodo mais raso em euler[i .. i + 2^k)
+
+	// Cria o índice para a árvore dada.
+	public LCAIndex(BinaryTree<E> T) {
+		tree = T;
+		rebuild();
+	}
+
+	// Retorna o ancestral comum mais próximo de u e v.
+	public Position<E> lca(Position<E> u, Position<E> v) throws InvalidPositionException {
+		return nodes[lca(indexOf(u), indexOf(v))];
+	}
+
+	// Retorna a profundidade de um nodo (a raiz tem profundidade 0).
+	public int depth(Position<E> v) throws InvalidPositionException {
+		return depth[indexOf(v)];
+	}
+
+	// Retorna o número de arestas no caminho entre u e v.
+	public int distance(Position<E> u, Position<E> v) throws InvalidPositionException {
+		int i = indexOf(u);
+		int j = indexOf(v);
+		return depth[i] + depth[j] - 2 * depth[lca(i, j)];
+	}
+
+	// Retorna se u é ancestral de v (todo nodo é ancestral de si mesmo).
+	public boolean isAncestor(Position<E> u, Position<E> v) throws InvalidPositionException {
+		int i = indexOf(u);
+		int j = indexOf(v);
+		return first[i] <= first[j] && last[j] <= last[i];
+	}
+
+	// Reconstrói o índice a partir do estado atual da árvore.
+	@SuppressWarnings("unchecked")
+	public void rebuild() {
+		int n = tree.size();
+		index = new IdentityHashMap<Position<E>, Integer>(n);
+		nodes = (Position<E>[]) new Position<?>[n];
+		depth = new int[n];
+		first = new int[n];
+		last = new int[n];
+		if (tree instanceof LinkedBinaryTree)
+			builtAt = ((LinkedBinaryTree<E>) tree).modCount();
+		if (n == 0) {
+			sparse = new int[0][];
+			return;
+		}
+		int[] euler = new int[2 * n - 1];
+		int m = 0;
+		int count = 0;
+		int[] stack = new int[n]; // caminho da raiz até o nodo atual
+		int[] state = new int[n];
+		int top = 0;
+		nodes[count] = tree.root();
+		index.put(nodes[count], count);
+		stack[top] = count++;
+		state[top++] = 0;
+		while (top > 0) {
+			int u = stack[top - 1];
+			Position<E> pu = nodes[u];
+			int child = -1;
+			if (state[top - 1] == 0) { // chegando pela esquerda
+				first[u] = m;
+				euler[m++] = u;
+				state[top - 1] = 1;
+				if (tree.hasLeft(pu))
+					child = addNode(tree.left(pu), depth[u] + 1, count++);
+			} else if (state[top - 1] == 1) { // por baixo
+				if (tree.hasLeft(pu))
+					euler[m++] = u;
+				state[top - 1] = 2;
+				if (tree.hasRight(pu))
+					child = addNode(tree.right(pu), depth[u] + 1, count++);
+			} else { // saindo pela direita
+				if (tree.hasRight(pu))
+					euler[m++] = u;
+				last[u] = m - 1;
+				top--;
+			}
+			if (child >= 0) {
+				stack[top] = child;
+				state[top++] = 0;
+			}
+		}
+		buildSparseTable(euler, m);
+	}
+
+	// Reconstrói o índice se a árvore mudou desde a última construção.
+	protected void ensureCurrent() {
+		if (tree instanceof LinkedBinaryTree && ((LinkedBinaryTree<E>) tree).modCount() != builtAt)
+			rebuild();
+	}
+
+	private int addNode(Position<E> v, int d, int i) {
+		nodes[i] = v;
+		depth[i] = d;
+		index.put(v, i);
+		return i;
+	}
+
+	private void buildSparseTable(int[] euler, int m) {
+		int levels = 32 - Integer.numberOfLeadingZeros(m);
+		sparse = new int[levels][];
+		sparse[0] = new int[m];
+		System.arraycopy(euler, 0, sparse[0], 0, m);
+		for (int k = 1; k < levels; k++) {
+			int half = 1 << (k - 1);
+			int len = m - (1 << k) + 1;
+			int[] prev = sparse[k - 1];
+			int[] row = new int[len];
+			for (int i = 0; i < len; i++)
+				row[i] = shallower(prev[i], prev[i + half]);
+			sparse[k] = row;
+		}
+	}
+
+	// Retorna o número do LCA dos nodos i e j: o nodo mais raso entre as suas
+	// primeiras ocorrências na sequência de Euler.
+	private int lca(int i, int j) {
+		int lo = Math.min(first[i], first[j]);
+		int hi = Math.max(first[i], first[j]);
+		int k = 31 - Integer.numberOfLeadingZeros(hi - lo + 1);
+		return shallower(sparse[k][lo], sparse[k][hi - (1 << k) + 1]);
+	}
+
+	private int shallower(int a, int b) {
+		return (depth[a] <= depth[b]) ? a : b;
+	}
+
+	private int indexOf(Position<E> v) throws InvalidPositionException {
+		ensureCurrent();
+		Integer i = (v == null) ? null : index.get(v);
+		if (i == null)
+			throw new InvalidPositionException("The position is not in the indexed tree");
+		return i;
+	}
+
+}
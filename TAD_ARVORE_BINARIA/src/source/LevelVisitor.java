@@ -0,0 +1,18 @@
+package source;
+
+import position.Position;
+
+// Interface para o processamento de uma árvore nível por nível.
+
+public interface LevelVisitor<E> {
+
+	// Chamado antes do primeiro nodo de cada nível.
+	public default void beginLevel(int depth) { }
+
+	// Chamado para cada nodo do nível, da esquerda para a direita.
+	public void visit(int depth, Position<E> v);
+
+	// Chamado após o último nodo de cada nível.
+	public default void endLevel(int depth) { }
+
+}
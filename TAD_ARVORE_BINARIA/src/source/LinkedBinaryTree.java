@@ -1,10 +1,27 @@
 package source;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import exceptions.BoundaryViolationException;
 import exceptions.EmptyTreeException;
 import exceptions.InvalidPositionException;
 import exceptions.NonEmptyTreeException;
+import fila.ArrayQueue;
+import memoria.Footprint;
 import pilha.NodeStack;
 import position.Position;
 import tad_lista_de_nodos.NodePositionList;
@@ -15,11 +32,24 @@ import tad_lista_de_nodos.PositionList;
 public class LinkedBinaryTree<E> implements BinaryTree<E> {
 	protected BTPosition<E> root; // referência para a raiz
 	protected int size; // número de nodos
+	protected TreeOwner owner; // identifica os nodos desta árvore
+	protected long generation; // muda sempre que nodos deixam a árvore em bloco
+	protected int modCount; // número de alterações estruturais já feitas
+
+	// Cache opcional dos caminhamentos, válido enquanto modCount não mudar
+	private boolean cacheTraversals;
+	private TraversalSnapshot<Position<E>> preorderCache, inorderCache;
+	private int preorderStamp, inorderStamp;
+
+	// Fonte de gerações únicas, compartilhada por todas as árvores
+	private static final AtomicLong GENERATIONS = new AtomicLong();
 
 	// Cria uma árvore binária vazia.
 	public LinkedBinaryTree() {
 		root = null; // inicia com uma árvore vazia
 		size = 0;
+		owner = new TreeOwner();
+		generation = nextGeneration();
 	}
 
 	// Retorna o número de nodos da árvore.
@@ -27,6 +57,30 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		return size;
 	}
 
+	// Retorna o número de alterações estruturais já feitas na árvore. Estruturas
+	// auxiliares comparam este valor para saber se ficaram desatualizadas.
+	public int modCount() {
+		return modCount;
+	}
+
+	// Retorna uma estimativa do espaço ocupado pela árvore: a própria árvore e os
+	// seus nodos como estrutura, e os elementos à parte.
+	public Footprint footprint() {
+		Footprint f = new Footprint().addStructure(this).addStructure(owner);
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		if (root != null)
+			stack.push(root);
+		while (!stack.isEmpty()) {
+			BTPosition<E> v = stack.pop();
+			f.addStructure(v).addElement(v.element());
+			if (v.getLeft() != null)
+				stack.push(v.getLeft());
+			if (v.getRight() != null)
+				stack.push(v.getRight());
+		}
+		return f;
+	}
+
 	// Retorna se um nodo é interno.
 	public boolean isInternal(Position<E> v) throws InvalidPositionException {
 		checkPosition(v); // método auxiliar
@@ -80,8 +134,23 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		return children;
 	}
 
+	// Liga ou desliga o cache dos caminhamentos. Com o cache ligado, positions,
+	// positionsInorder e iterator devolvem uma fotografia em arranjo, que só é
+	// refeita quando a árvore sofre uma alteração estrutural (modCount).
+	public void setTraversalCache(boolean enabled) {
+		cacheTraversals = enabled;
+		preorderCache = inorderCache = null;
+	}
+
 	// Retorna uma coleção iterável (inorder) contendo os nodos da árvore.
 	public Iterable<Position<E>> positionsInorder() {
+		if (cacheTraversals) {
+			if (inorderCache == null || inorderStamp != modCount()) {
+				inorderStamp = modCount();
+				inorderCache = new TraversalSnapshot<Position<E>>(traversal(true));
+			}
+			return inorderCache;
+		}
 		PositionList<Position<E>> positions = new NodePositionList<Position<E>>();
 		if (size != 0)
 			inorderPositions(root(), positions); // atribui as posições usando caminhamento prefixado
@@ -100,15 +169,116 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 
 	// Retorna uma coleção iterável contendo os nodos da árvore.
 	public Iterable<Position<E>> positions() {
+		if (cacheTraversals) {
+			if (preorderCache == null || preorderStamp != modCount()) {
+				preorderStamp = modCount();
+				preorderCache = new TraversalSnapshot<Position<E>>(traversal(false));
+			}
+			return preorderCache;
+		}
 		PositionList<Position<E>> positions = new NodePositionList<Position<E>>();
 		if (size != 0)
 			preorderPositions(root(), positions); // atribui as posições usando caminhamento prefixado
 		return positions;
 	}
 
+	// Monta em um arranjo o caminhamento prefixado ou inorder, sem recursão.
+	Object[] traversal(boolean inorder) {
+		Object[] out = new Object[size()];
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		int n = 0;
+		BTPosition<E> v = root;
+		while (v != null || !stack.isEmpty()) {
+			while (v != null) {
+				if (!inorder)
+					out[n++] = v;
+				stack.push(v);
+				v = v.getLeft();
+			}
+			BTPosition<E> u = stack.pop();
+			if (inorder)
+				out[n++] = u;
+			v = u.getRight();
+		}
+		return out;
+	}
+
+	// Retorna uma coleção iterável contendo os nodos da árvore por nível
+	// (caminhamento em largura). Os nodos são produzidos sob demanda, sem
+	// montar uma lista com todas as posições.
+	public Iterable<Position<E>> positionsLevelOrder() {
+		return new Iterable<Position<E>>() {
+			public Iterator<Position<E>> iterator() {
+				return new LevelOrderIterator();
+			}
+		};
+	}
+
+	// Percorre a árvore nível por nível. A fila guarda no máximo o nível atual e
+	// o seguinte, então a memória usada é limitada pela largura da árvore.
+	public void forEachLevel(LevelVisitor<E> visitor) {
+		if (isEmpty())
+			return;
+		ArrayQueue<BTPosition<E>> queue = new ArrayQueue<BTPosition<E>>();
+		queue.enqueue(root);
+		for (int depth = 0; !queue.isEmpty(); depth++) {
+			visitor.beginLevel(depth);
+			for (int width = queue.size(); width > 0; width--) {
+				BTPosition<E> v = queue.dequeue();
+				visitor.visit(depth, v);
+				if (v.getLeft() != null)
+					queue.enqueue(v.getLeft());
+				if (v.getRight() != null)
+					queue.enqueue(v.getRight());
+			}
+			visitor.endLevel(depth);
+		}
+	}
+
+	// Retorna o nodo de menor profundidade (o mais à esquerda, em caso de empate)
+	// cujo elemento satisfaz o predicado, ou null se nenhum satisfizer.
+	public Position<E> findShallowest(Predicate<? super E> predicate) {
+		for (Position<E> v : positionsLevelOrder())
+			if (predicate.test(v.element()))
+				return v;
+		return null;
+	}
+
+	// Iterador do caminhamento em largura, apoiado em uma fila circular.
+	protected class LevelOrderIterator implements Iterator<Position<E>> {
+		private final ArrayQueue<BTPosition<E>> queue = new ArrayQueue<BTPosition<E>>();
+
+		public LevelOrderIterator() {
+			if (root != null)
+				queue.enqueue(root);
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public Position<E> next() throws NoSuchElementException {
+			if (queue.isEmpty())
+				throw new NoSuchElementException("No next position");
+			BTPosition<E> v = queue.dequeue();
+			if (v.getLeft() != null)
+				queue.enqueue(v.getLeft());
+			if (v.getRight() != null)
+				queue.enqueue(v.getRight());
+			return v;
+		}
+	}
+
 	// Retorna um iterador sobre os elementos armazenados nos nodos
 	public Iterator<E> iterator() {
 		Iterable<Position<E>> positions = positions();
+		if (cacheTraversals) { // lê os elementos da fotografia, sem copiá-los
+			Iterator<Position<E>> it = positions.iterator();
+			return new Iterator<E>() {
+				public boolean hasNext() { return it.hasNext(); }
+				public E next() { return it.next().element(); }
+			};
+		}
 		PositionList<E> elements = new NodePositionList<E>();
 		for (Position<E> pos : positions)
 			elements.addLast(pos.element());
@@ -120,6 +290,7 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		BTPosition<E> vv = checkPosition(v);
 		E temp = v.element();
 		vv.setElement(o);
+		updatePath(vv);
 		return temp;
 	}
 
@@ -147,6 +318,7 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		if (!isEmpty())
 			throw new NonEmptyTreeException("Tree already has a root");
 		size = 1;
+		modCount++;
 		root = createNode(e, null, null, null);
 		return root;
 	}
@@ -159,7 +331,9 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 			throw new InvalidPositionException("Node already has a left child");
 		BTPosition<E> ww = createNode(e, vv, null, null);
 		vv.setLeft(ww);
+		updatePath(vv);
 		size++;
+		modCount++;
 		return ww;
 	}
 
@@ -171,13 +345,77 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 			throw new InvalidPositionException("Node already has a right child");
 		BTPosition<E> ww = createNode(e, vv, null, null);
 		vv.setRight(ww);
+		updatePath(vv);
 		size++;
+		modCount++;
 		return ww;
 	}
 
-	// Remove um nodo com zero ou um filho.
+	// Remove um nodo. Um nodo com dois filhos é substituído pelo seu sucessor
+	// inorder, que é religado no lugar dele: nenhuma outra posição muda de
+	// elemento e o caminhamento inorder dos demais nodos é preservado.
 	public E remove(Position<E> v) throws InvalidPositionException {
 		BTPosition<E> vv = checkPosition(v);
+		E element = v.element();
+		BTPosition<E> uu = (vv.getLeft() != null && vv.getRight() != null) ? replaceBySuccessor(vv) : unlink(vv);
+		if (uu != null)
+			updatePath(uu);
+		size--;
+		modCount++;
+		return element;
+	}
+
+	// Rotação à esquerda: o filho da direita de v toma o lugar de v, que passa a
+	// ser o filho da esquerda dele. Retorna a nova raiz da subárvore.
+	public Position<E> rotateLeft(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> x = checkPosition(v).getRight();
+		if (x == null)
+			throw new BoundaryViolationException("No right child");
+		rotate(x);
+		if (x.getParent() != null)
+			updatePath(x.getParent());
+		return x;
+	}
+
+	// Rotação à direita: o filho da esquerda de v toma o lugar de v, que passa a
+	// ser o filho da direita dele. Retorna a nova raiz da subárvore.
+	public Position<E> rotateRight(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> x = checkPosition(v).getLeft();
+		if (x == null)
+			throw new BoundaryViolationException("No left child");
+		rotate(x);
+		if (x.getParent() != null)
+			updatePath(x.getParent());
+		return x;
+	}
+
+	// Reestruturação trinodo de x, do seu pai y e do seu avô z: o do meio dos
+	// três na ordem inorder passa a ser a raiz da subárvore, com os outros dois
+	// como filhos. É uma rotação simples se x e y estão do mesmo lado e dupla se
+	// não. Retorna a nova raiz da subárvore.
+	public Position<E> restructure(Position<E> x) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> xx = checkPosition(x);
+		BTPosition<E> y = xx.getParent();
+		if (y == null || y.getParent() == null)
+			throw new BoundaryViolationException("No grandparent");
+		BTPosition<E> z = y.getParent();
+		BTPosition<E> b;
+		if ((z.getLeft() == y) == (y.getLeft() == xx)) {
+			rotate(y);
+			b = y;
+		} else {
+			rotate(xx);
+			rotate(xx);
+			b = xx;
+		}
+		if (b.getParent() != null)
+			updatePath(b.getParent());
+		return b;
+	}
+
+	// Desliga da árvore um nodo com zero ou um filho, sem recalcular os dados
+	// agregados, e retorna o seu antigo pai (null se era a raiz).
+	protected BTPosition<E> unlink(BTPosition<E> vv) throws InvalidPositionException {
 		BTPosition<E> leftPos = vv.getLeft();
 		BTPosition<E> rightPos = vv.getRight();
 		if (leftPos != null && rightPos != null)
@@ -189,12 +427,12 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 			ww = rightPos;
 		else // v é folha
 			ww = null;
+		BTPosition<E> uu = vv.getParent();
 		if (vv == root) { // v é a raiz
 			if (ww != null)
 				ww.setParent(null);
 			root = ww;
 		} else { // v não é a raiz
-			BTPosition<E> uu = vv.getParent();
 			if (vv == uu.getLeft())
 				uu.setLeft(ww);
 			else
@@ -202,8 +440,45 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 			if (ww != null)
 				ww.setParent(uu);
 		}
-		size--;
-		return v.element();
+		// Desconecta o nodo e marca-o como inválido
+		vv.setOwner(null);
+		vv.setParent(null);
+		vv.setLeft(null);
+		vv.setRight(null);
+		return uu;
+	}
+
+	// Desliga da árvore um nodo com dois filhos, colocando no lugar dele o seu
+	// sucessor inorder, sem recalcular os dados agregados. Retorna o nodo mais
+	// baixo a partir do qual o caminho até a raiz precisa ser recalculado.
+	protected BTPosition<E> replaceBySuccessor(BTPosition<E> vv) {
+		BTPosition<E> ss = vv.getRight();
+		while (ss.getLeft() != null)
+			ss = ss.getLeft();
+		BTPosition<E> sp = ss.getParent();
+		if (sp != vv) { // o filho da direita do sucessor ocupa o lugar dele
+			BTPosition<E> r = ss.getRight();
+			sp.setLeft(r);
+			if (r != null)
+				r.setParent(sp);
+			ss.setRight(vv.getRight());
+			vv.getRight().setParent(ss);
+		}
+		ss.setLeft(vv.getLeft());
+		vv.getLeft().setParent(ss);
+		BTPosition<E> uu = vv.getParent();
+		ss.setParent(uu);
+		if (uu == null)
+			root = ss;
+		else if (uu.getLeft() == vv)
+			uu.setLeft(ss);
+		else
+			uu.setRight(ss);
+		vv.setOwner(null);
+		vv.setParent(null);
+		vv.setLeft(null);
+		vv.setRight(null);
+		return (sp != vv) ? sp : ss;
 	}
 
 	// Conecta duas árvores para serem subárvores de um nodo externo.
@@ -211,29 +486,842 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		BTPosition<E> vv = checkPosition(v);
 		if (isInternal(v))
 			throw new InvalidPositionException("Cannot attach from internal node");
-		if (!T1.isEmpty()) {
-			BTPosition<E> r1 = checkPosition(T1.root());
+		LinkedBinaryTree<E> t1 = checkTree(T1);
+		LinkedBinaryTree<E> t2 = checkTree(T2);
+		if (t1 == t2 && !t1.isEmpty())
+			throw new InvalidPositionException("Cannot attach the same tree twice");
+		link(vv, t1, t2);
+		updatePath(vv);
+	}
+
+	// Conecta várias árvores de uma só vez: a i-ésima árvore de lefts e de rights
+	// vira subárvore da esquerda e da direita do i-ésimo nodo externo de nodes.
+	// Todas as posições e árvores são validadas antes de qualquer alteração.
+	public void graft(PositionList<Position<E>> nodes, PositionList<BinaryTree<E>> lefts,
+			PositionList<BinaryTree<E>> rights) throws InvalidPositionException {
+		if (nodes.size() != lefts.size() || nodes.size() != rights.size())
+			throw new InvalidPositionException("The lists must have the same size");
+		Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		Iterator<BinaryTree<E>> l = lefts.iterator();
+		Iterator<BinaryTree<E>> r = rights.iterator();
+		for (Position<E> v : nodes) {
+			BTPosition<E> vv = checkPosition(v);
+			if (vv.getLeft() != null || vv.getRight() != null)
+				throw new InvalidPositionException("Cannot attach from internal node");
+			if (!seen.add(vv))
+				throw new InvalidPositionException("Cannot attach to the same node twice");
+			LinkedBinaryTree<E> t1 = checkTree(l.next());
+			LinkedBinaryTree<E> t2 = checkTree(r.next());
+			if ((!t1.isEmpty() && !seen.add(t1)) || (!t2.isEmpty() && !seen.add(t2)))
+				throw new InvalidPositionException("Cannot attach the same tree twice");
+		}
+		l = lefts.iterator();
+		r = rights.iterator();
+		for (Position<E> v : nodes) {
+			BTPosition<E> vv = (BTPosition<E>) v;
+			link(vv, (LinkedBinaryTree<E>) l.next(), (LinkedBinaryTree<E>) r.next());
+			updatePath(vv);
+		}
+	}
+
+	// Desconecta a subárvore da esquerda de um nodo, retornando-a como uma nova árvore.
+	public LinkedBinaryTree<E> detachLeft(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> vv = checkPosition(v);
+		BTPosition<E> ww = vv.getLeft();
+		if (ww == null)
+			throw new BoundaryViolationException("No left child");
+		vv.setLeft(null);
+		return detach(vv, ww);
+	}
+
+	// Desconecta a subárvore da direita de um nodo, retornando-a como uma nova árvore.
+	public LinkedBinaryTree<E> detachRight(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> vv = checkPosition(v);
+		BTPosition<E> ww = vv.getRight();
+		if (ww == null)
+			throw new BoundaryViolationException("No right child");
+		vv.setRight(null);
+		return detach(vv, ww);
+	}
+
+	// Retorna o número de nodos da subárvore enraizada em um nodo.
+	public int subtreeSize(Position<E> v) throws InvalidPositionException {
+		return checkPosition(v).getSubtreeSize();
+	}
+
+	// Métodos de estatística de ordem
+	// Usam o tamanho das subárvores para responder em O(profundidade), que é
+	// O(log n) em uma árvore balanceada.
+
+	// Retorna o k-ésimo nodo do caminhamento inorder (k começa em 1). Em uma
+	// árvore de busca é o nodo com a k-ésima menor chave.
+	public Position<E> select(int k) throws BoundaryViolationException {
+		if (k < 1 || k > sizeOf(root))
+			throw new BoundaryViolationException("No element of rank " + k);
+		BTPosition<E> v = root;
+		while (true) {
+			int leftSize = sizeOf(v.getLeft());
+			if (k <= leftSize) {
+				v = v.getLeft();
+			} else if (k == leftSize + 1) {
+				return v;
+			} else {
+				k -= leftSize + 1;
+				v = v.getRight();
+			}
+		}
+	}
+
+	// Retorna a posição (a partir de 1) de um nodo no caminhamento inorder.
+	public int rank(Position<E> v) throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		int r = sizeOf(vv.getLeft()) + 1;
+		for (BTPosition<E> u = vv, p = vv.getParent(); p != null; u = p, p = p.getParent())
+			if (p.getRight() == u)
+				r += sizeOf(p.getLeft()) + 1;
+		return r;
+	}
+
+	// Retorna quantas chaves da árvore de busca são menores que key, na ordem natural.
+	public int rank(E key) {
+		return rank(key, null);
+	}
+
+	// Retorna quantas chaves da árvore de busca são menores que key, segundo o comparador.
+	public int rank(E key, Comparator<? super E> c) {
+		return countBelow(key, false, c);
+	}
+
+	// Retorna quantas chaves da árvore de busca estão no intervalo [lo, hi], na ordem natural.
+	public int countInRange(E lo, E hi) {
+		return countInRange(lo, hi, null);
+	}
+
+	// Retorna quantas chaves da árvore de busca estão no intervalo [lo, hi], segundo o comparador.
+	public int countInRange(E lo, E hi, Comparator<? super E> c) {
+		if (compare(lo, hi, c) > 0)
+			return 0;
+		return countBelow(hi, true, c) - countBelow(lo, false, c);
+	}
+
+	// Conta as chaves menores que key (ou menores ou iguais, se inclusive).
+	protected int countBelow(E key, boolean inclusive, Comparator<? super E> c) {
+		int count = 0;
+		BTPosition<E> v = root;
+		while (v != null) {
+			int cmp = compare(v.element(), key, c);
+			if (cmp < 0 || (inclusive && cmp == 0)) {
+				count += sizeOf(v.getLeft()) + 1;
+				v = v.getRight();
+			} else {
+				v = v.getLeft();
+			}
+		}
+		return count;
+	}
+
+	// Desce pela árvore de busca procurando key e retorna o nodo com a chave, ou
+	// o último nodo visitado se ela não estiver na árvore (null se vazia).
+	protected BTPosition<E> lookup(E key, Comparator<? super E> c) {
+		BTPosition<E> v = root;
+		while (v != null) {
+			int cmp = compare(key, v.element(), c);
+			BTPosition<E> next = (cmp < 0) ? v.getLeft() : (cmp > 0) ? v.getRight() : null;
+			if (next == null)
+				return v;
+			v = next;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E> int compare(E a, E b, Comparator<? super E> c) {
+		if (c != null)
+			return c.compare(a, b);
+		return ((Comparable<? super E>) a).compareTo(b);
+	}
+
+	private static int sizeOf(BTPosition<?> v) {
+		return (v == null) ? 0 : v.getSubtreeSize();
+	}
+
+	// Retorna o hash estrutural da subárvore enraizada em um nodo. Subárvores com
+	// a mesma forma e os mesmos elementos têm o mesmo hash.
+	public int subtreeHash(Position<E> v) throws InvalidPositionException {
+		return checkPosition(v).getSubtreeHash();
+	}
+
+	// Retorna o hash estrutural da árvore inteira (0 se estiver vazia).
+	public int structuralHash() {
+		return (root == null) ? 0 : root.getSubtreeHash();
+	}
+
+	// Retorna se as duas árvores têm a mesma forma e elementos iguais. Árvores de
+	// tamanho ou hash diferentes são rejeitadas em O(1).
+	public boolean structurallyEquals(LinkedBinaryTree<E> other) {
+		if (root == null || other.root == null)
+			return (root == other.root);
+		return equalSubtrees(root, other.root);
+	}
+
+	// Retorna os nodos desta árvore em que ela difere da outra: nodos com elemento
+	// diferente ou com um filho sem correspondente na outra árvore. Subárvores com
+	// mesmo tamanho e hash são consideradas iguais e não são percorridas, então o
+	// custo é proporcional à parte alterada. O resultado é probabilístico: uma
+	// subárvore alterada cujo hash de 32 bits colida com o da original não é
+	// reportada (veja diff(other, true)).
+	public PositionList<Position<E>> diff(LinkedBinaryTree<E> other) {
+		return diff(other, false);
+	}
+
+	// Como diff(other), mas se exact for true cada par de subárvores com mesmo
+	// tamanho e hash é confirmado por equalSubtrees, e percorrido se não forem
+	// iguais. O resultado é exato, ao custo de visitar também as partes iguais.
+	public PositionList<Position<E>> diff(LinkedBinaryTree<E> other, boolean exact) {
+		PositionList<Position<E>> changed = new NodePositionList<Position<E>>();
+		if (root == null)
+			return changed;
+		if (other.root == null) {
+			changed.addLast(root);
+			return changed;
+		}
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		stack.push(root);
+		stack.push(other.root);
+		while (!stack.isEmpty()) {
+			BTPosition<E> b = stack.pop();
+			BTPosition<E> a = stack.pop();
+			if (a.getSubtreeSize() == b.getSubtreeSize() && a.getSubtreeHash() == b.getSubtreeHash()
+					&& (!exact || equalSubtrees(a, b)))
+				continue;
+			boolean differs = !equalElements(a.element(), b.element());
+			BTPosition<E> al = a.getLeft(), bl = b.getLeft();
+			BTPosition<E> ar = a.getRight(), br = b.getRight();
+			if ((al == null) != (bl == null) || (ar == null) != (br == null))
+				differs = true;
+			if (differs)
+				changed.addLast(a);
+			if (al != null && bl != null) {
+				stack.push(al);
+				stack.push(bl);
+			}
+			if (ar != null && br != null) {
+				stack.push(ar);
+				stack.push(br);
+			}
+		}
+		return changed;
+	}
+
+	// Compara duas subárvores nodo a nodo, descartando cedo pares de tamanho ou
+	// hash diferentes.
+	protected static <E> boolean equalSubtrees(BTPosition<E> a, BTPosition<E> b) {
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		stack.push(a);
+		stack.push(b);
+		while (!stack.isEmpty()) {
+			BTPosition<E> y = stack.pop();
+			BTPosition<E> x = stack.pop();
+			if (x.getSubtreeSize() != y.getSubtreeSize() || x.getSubtreeHash() != y.getSubtreeHash()
+					|| !equalElements(x.element(), y.element()))
+				return false;
+			BTPosition<E> xl = x.getLeft(), yl = y.getLeft();
+			BTPosition<E> xr = x.getRight(), yr = y.getRight();
+			if ((xl == null) != (yl == null) || (xr == null) != (yr == null))
+				return false;
+			if (xl != null) {
+				stack.push(xl);
+				stack.push(yl);
+			}
+			if (xr != null) {
+				stack.push(xr);
+				stack.push(yr);
+			}
+		}
+		return true;
+	}
+
+	private static boolean equalElements(Object x, Object y) {
+		return (x == null) ? (y == null) : x.equals(y);
+	}
+
+	// Liga as raízes de T1 e T2 como filhos de vv, esvaziando T1 e T2, e retorna
+	// a quantidade de nodos transferidos. Os nodos movidos não são percorridos.
+	protected int link(BTPosition<E> vv, LinkedBinaryTree<E> t1, LinkedBinaryTree<E> t2) {
+		int moved = t1.size() + t2.size();
+		if (!t1.isEmpty()) {
+			BTPosition<E> r1 = t1.checkPosition(t1.root());
 			vv.setLeft(r1);
-			r1.setParent(vv); // T1 deve ser invalidada
+			r1.setParent(vv);
+			t1.moveTo(this); // T1 é invalidada
 		}
-		if (!T2.isEmpty()) {
-			BTPosition<E> r2 = checkPosition(T2.root());
+		if (!t2.isEmpty()) {
+			BTPosition<E> r2 = t2.checkPosition(t2.root());
 			vv.setRight(r2);
-			r2.setParent(vv); // T2 deve ser invalidada
+			r2.setParent(vv);
+			t2.moveTo(this); // T2 é invalidada
 		}
+		size += moved;
+		modCount++;
+		return moved;
+	}
+
+	// Separa a subárvore enraizada em ww (já desligada de parent) em uma nova
+	// árvore. O tamanho vem da subárvore, então os nodos movidos não são percorridos.
+	protected LinkedBinaryTree<E> detach(BTPosition<E> parent, BTPosition<E> ww) {
+		int moved = ww.getSubtreeSize();
+		ww.setParent(null);
+		updatePath(parent);
+		size -= moved;
+		modCount++;
+		generation = nextGeneration(); // os nodos de ww deixam de valer nesta árvore
+		LinkedBinaryTree<E> t = newTree();
+		t.owner = owner; // mesma família: os nodos são revalidados na nova árvore
+		t.root = ww;
+		t.size = moved;
+		return t;
 	}
 
-	// Se v é um nodo de árvore binária, converte para BTPosition, caso contrário
-	// lança exceção
+	// Rotação: sobe x um nível, descendo o seu pai p para o lado oposto; o
+	// caminhamento inorder não muda. Só p e x são recalculados, em O(1). Os
+	// ancestrais mantêm o tamanho, mas o hash deles fica desatualizado até que
+	// x suba até a raiz ou que quem chamou use updatePath sobre o pai de x.
+	protected void rotate(BTPosition<E> x) {
+		BTPosition<E> p = x.getParent();
+		BTPosition<E> g = p.getParent();
+		if (p.getLeft() == x) {
+			BTPosition<E> b = x.getRight();
+			p.setLeft(b);
+			if (b != null)
+				b.setParent(p);
+			x.setRight(p);
+		} else {
+			BTPosition<E> b = x.getLeft();
+			p.setRight(b);
+			if (b != null)
+				b.setParent(p);
+			x.setLeft(p);
+		}
+		p.setParent(x);
+		x.setParent(g);
+		if (g == null)
+			root = x;
+		else if (g.getLeft() == p)
+			g.setLeft(x);
+		else
+			g.setRight(x);
+		refresh(p);
+		refresh(x);
+		modCount++;
+	}
+
+	// Recalcula os dados agregados (tamanho e hash da subárvore) de v e de todos
+	// os seus ancestrais, após uma alteração em v.
+	protected void updatePath(BTPosition<E> v) {
+		for (BTPosition<E> u = v; u != null; u = u.getParent())
+			refresh(u);
+	}
+
+	// Retorna um lote vazio de alterações sobre esta árvore.
+	public TreeBatch<E> batch() {
+		return new TreeBatch<E>(this);
+	}
+
+	// Aplica as operações de um lote: primeiro valida o lote inteiro sem alterar
+	// a árvore; depois liga e desliga os nodos sem recalcular nada e, no fim,
+	// recalcula os nodos afetados uma única vez. Se alguma operação for
+	// inválida, a exceção é lançada antes de qualquer alteração.
+	@SuppressWarnings("unchecked")
+	protected void applyBatch(TreeBatch<E> batch) throws InvalidPositionException {
+		BTPosition<E>[] targets = validateBatch(batch);
+		ArrayList<BTPosition<E>> dirty = new ArrayList<BTPosition<E>>();
+		int delta = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			BTPosition<E> vv = targets[i];
+			int kind = batch.kinds[i];
+			if (kind == TreeBatch.REPLACE) {
+				vv.setElement((E) batch.args.get(i));
+				dirty.add(vv);
+			} else if (kind == TreeBatch.REMOVE) {
+				BTPosition<E> uu = unlink(vv);
+				if (uu != null)
+					dirty.add(uu);
+				delta--;
+			} else {
+				BTPosition<E> ww = (BTPosition<E>) batch.args.get(i);
+				ww.setParent(vv);
+				ww.setOwner(owner);
+				ww.setGeneration(generation);
+				if (kind == TreeBatch.INSERT_LEFT)
+					vv.setLeft(ww);
+				else
+					vv.setRight(ww);
+				dirty.add(vv);
+				delta++;
+			}
+		}
+		size += delta;
+		modCount++;
+		refreshAll(dirty);
+	}
+
+	// Ligações de um nodo durante a simulação de um lote
+	private static class Shadow<E> {
+		BTPosition<E> parent, left, right;
+		boolean removed;
+
+		Shadow(BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+			this.parent = parent;
+			this.left = left;
+			this.right = right;
+		}
+	}
+
+	// Simula o lote sobre cópias das ligações dos nodos envolvidos, sem alterar a
+	// árvore, e retorna os alvos já validados. Nodos criados pelo lote só valem
+	// como alvo depois da operação que os insere.
+	@SuppressWarnings("unchecked")
+	private BTPosition<E>[] validateBatch(TreeBatch<E> batch) throws InvalidPositionException {
+		int n = batch.size();
+		BTPosition<E>[] targets = (BTPosition<E>[]) new BTPosition<?>[n];
+		IdentityHashMap<BTPosition<E>, Shadow<E>> shadows = new IdentityHashMap<BTPosition<E>, Shadow<E>>();
+		for (int i = 0; i < n; i++) {
+			Position<E> v = batch.targets.get(i);
+			Shadow<E> sv = shadows.get(v);
+			BTPosition<E> vv;
+			if (sv != null) { // nodo já envolvido no lote
+				if (sv.removed)
+					throw new InvalidPositionException("The position was removed by the batch");
+				vv = (BTPosition<E>) v;
+			} else {
+				vv = checkPosition(v);
+				sv = shadow(shadows, vv);
+			}
+			targets[i] = vv;
+			int kind = batch.kinds[i];
+			if (kind == TreeBatch.REMOVE) {
+				if (sv.left != null && sv.right != null)
+					throw new InvalidPositionException("Cannot remove node with two children");
+				BTPosition<E> child = (sv.left != null) ? sv.left : sv.right;
+				if (sv.parent != null) {
+					Shadow<E> sp = shadow(shadows, sv.parent);
+					if (sp.left == vv)
+						sp.left = child;
+					else
+						sp.right = child;
+				}
+				if (child != null)
+					shadow(shadows, child).parent = sv.parent;
+				sv.removed = true;
+			} else if (kind != TreeBatch.REPLACE) {
+				boolean left = (kind == TreeBatch.INSERT_LEFT);
+				if ((left ? sv.left : sv.right) != null)
+					throw new InvalidPositionException(left ? "Node already has a left child"
+							: "Node already has a right child");
+				BTPosition<E> ww = (BTPosition<E>) batch.args.get(i);
+				if (left)
+					sv.left = ww;
+				else
+					sv.right = ww;
+				shadows.put(ww, new Shadow<E>(vv, null, null));
+			}
+		}
+		return targets;
+	}
+
+	private static <E> Shadow<E> shadow(IdentityHashMap<BTPosition<E>, Shadow<E>> shadows, BTPosition<E> v) {
+		Shadow<E> s = shadows.get(v);
+		if (s == null) {
+			s = new Shadow<E>(v.getParent(), v.getLeft(), v.getRight());
+			shadows.put(v, s);
+		}
+		return s;
+	}
+
+	// Recalcula os nodos dados e seus ancestrais, cada um uma única vez e sempre
+	// depois dos seus filhos. Enquanto espera, um nodo guarda no lugar do
+	// tamanho o valor -(1 + filhos ainda não recalculados); nenhuma subárvore
+	// real tem tamanho negativo. A subida a partir de cada nodo para no primeiro
+	// ancestral já marcado, então cada nodo afetado é percorrido uma única vez.
+	protected void refreshAll(ArrayList<BTPosition<E>> dirty) {
+		ArrayList<BTPosition<E>> marked = new ArrayList<BTPosition<E>>();
+		for (BTPosition<E> d : dirty) {
+			if (d.getOwner() == null || d.getSubtreeSize() < 0)
+				continue; // removido, ou já marcado
+			d.setSubtreeSize(-1);
+			marked.add(d);
+			for (BTPosition<E> u = d.getParent(); u != null; u = u.getParent()) {
+				if (u.getSubtreeSize() < 0) { // caminho já marcado: só conta mais um filho
+					u.setSubtreeSize(u.getSubtreeSize() - 1);
+					break;
+				}
+				u.setSubtreeSize(-2);
+				marked.add(u);
+			}
+		}
+		ArrayDeque<BTPosition<E>> ready = new ArrayDeque<BTPosition<E>>();
+		for (BTPosition<E> u : marked)
+			if (u.getSubtreeSize() == -1)
+				ready.push(u);
+		while (!ready.isEmpty()) {
+			BTPosition<E> u = ready.pop();
+			refresh(u);
+			BTPosition<E> p = u.getParent();
+			if (p != null && p.getSubtreeSize() < 0) {
+				p.setSubtreeSize(p.getSubtreeSize() + 1);
+				if (p.getSubtreeSize() == -1)
+					ready.push(p);
+			}
+		}
+	}
+
+	// Recalcula os dados agregados de um nodo a partir dos seus filhos.
+	protected void refresh(BTPosition<E> v) {
+		BTPosition<E> l = v.getLeft();
+		BTPosition<E> r = v.getRight();
+		v.setSubtreeSize(1 + (l == null ? 0 : l.getSubtreeSize()) + (r == null ? 0 : r.getSubtreeSize()));
+		v.setSubtreeHash(subtreeHash(v.element(), l, r));
+	}
+
+	// Hash estrutural (Merkle) de uma subárvore: combina o hash do elemento com
+	// os hashes das subárvores, distinguindo filho ausente à esquerda e à direita.
+	protected static int subtreeHash(Object element, BTPosition<?> l, BTPosition<?> r) {
+		return combineHash(element, l == null ? NO_LEFT_HASH : l.getSubtreeHash(),
+				r == null ? NO_RIGHT_HASH : r.getSubtreeHash());
+	}
+
+	// Hashes usados no lugar de um filho ausente
+	static final int NO_LEFT_HASH = 0x243F6A88, NO_RIGHT_HASH = 0x85A308D3;
+
+	// Combina o hash de um elemento com os hashes já calculados das subárvores.
+	static int combineHash(Object element, int leftHash, int rightHash) {
+		int h = (element == null) ? 0 : element.hashCode();
+		h = h * 0x9E3779B1 + leftHash;
+		h = h * 0x9E3779B1 + rightHash;
+		h ^= h >>> 16; // finalizador do MurmurHash3
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+
+	// Cria uma árvore vazia do mesmo tipo desta
+	protected LinkedBinaryTree<E> newTree() {
+		return new LinkedBinaryTree<E>();
+	}
+
+	// Métodos de visão
+	// As visões implementam BinaryTree diretamente sobre os nodos desta árvore,
+	// sem copiá-los, e acompanham as alterações feitas nela.
+
+	// Retorna uma visão da subárvore de v.
+	public SubtreeView<E> subtreeView(Position<E> v) throws InvalidPositionException {
+		return new SubtreeView<E>(this, checkPosition(v));
+	}
+
+	// Retorna uma visão somente de leitura da árvore com os elementos
+	// transformados por f, aplicada apenas quando um elemento é lido.
+	public <F> MappedView<E, F> mapView(Function<? super E, ? extends F> f) {
+		return new MappedView<E, F>(this, null, f);
+	}
+
+	// Métodos de cópia
+	// A cópia é feita em uma única passada por nível, sem recursão e sem
+	// checkPosition por nodo. O resultado é sempre uma LinkedBinaryTree comum.
+
+	// Subárvores com até este número de nodos são copiadas por uma única tarefa
+	// no modo paralelo.
+	private static final int PARALLEL_COPY_THRESHOLD = 1 << 15;
+
+	// Retorna uma cópia da árvore.
+	public LinkedBinaryTree<E> copy() {
+		return copy(Function.identity(), false);
+	}
+
+	// Retorna uma cópia da árvore, aplicando a função a cada elemento.
+	public <F> LinkedBinaryTree<F> copy(Function<? super E, ? extends F> f, boolean parallel) {
+		if (root == null)
+			return new LinkedBinaryTree<F>();
+		return copySubtree(root, f, parallel);
+	}
+
+	// Retorna uma cópia da subárvore de v.
+	public LinkedBinaryTree<E> copySubtree(Position<E> v) throws InvalidPositionException {
+		return copySubtree(v, Function.identity(), false);
+	}
+
+	// Retorna uma cópia da subárvore de v, aplicando a função a cada elemento. No
+	// modo paralelo as subárvores grandes são copiadas em paralelo (ForkJoin) e
+	// depois ligadas à parte de cima da cópia.
+	public <F> LinkedBinaryTree<F> copySubtree(Position<E> v, Function<? super E, ? extends F> f, boolean parallel)
+			throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		LinkedBinaryTree<F> tree = new LinkedBinaryTree<F>();
+		int n = vv.getSubtreeSize();
+		if (!parallel || n <= PARALLEL_COPY_THRESHOLD) {
+			tree.root = copyNodes(vv, f, tree, Integer.MAX_VALUE, null);
+		} else {
+			int cutoff = Math.max(PARALLEL_COPY_THRESHOLD / 4,
+					n / (4 * ForkJoinPool.getCommonPoolParallelism()));
+			tree.root = copyNodes(vv, f, tree, cutoff, new ArrayList<SubtreeCopy<E, F>>());
+		}
+		tree.size = n;
+		return tree;
+	}
+
+	// Copia os nodos da subárvore de src por nível. Se houver lista de tarefas, os
+	// filhos com até cutoff nodos viram tarefas, executadas em paralelo antes de
+	// recalcular os dados agregados da parte de cima.
+	@SuppressWarnings("unchecked")
+	private static <E, F> BTPosition<F> copyNodes(BTPosition<E> src, Function<? super E, ? extends F> f,
+			LinkedBinaryTree<F> tree, int cutoff, ArrayList<SubtreeCopy<E, F>> tasks) {
+		int capacity = (tasks == null) ? src.getSubtreeSize() : 64;
+		BTPosition<E>[] from = (BTPosition<E>[]) new BTPosition<?>[capacity];
+		BTPosition<F>[] to = (BTPosition<F>[]) new BTPosition<?>[capacity];
+		from[0] = src;
+		to[0] = tree.createNode(f.apply(src.element()), null, null, null);
+		int tail = 1;
+		for (int i = 0; i < tail; i++) {
+			BTPosition<F> parent = to[i];
+			for (int side = 0; side < 2; side++) {
+				BTPosition<E> child = (side == 0) ? from[i].getLeft() : from[i].getRight();
+				if (child == null)
+					continue;
+				if (tasks != null && child.getSubtreeSize() <= cutoff) {
+					tasks.add(new SubtreeCopy<E, F>(child, parent, side == 0, f, tree));
+					continue;
+				}
+				if (tail == from.length) {
+					from = Arrays.copyOf(from, tail * 2);
+					to = Arrays.copyOf(to, tail * 2);
+				}
+				BTPosition<F> copy = tree.createNode(f.apply(child.element()), parent, null, null);
+				if (side == 0)
+					parent.setLeft(copy);
+				else
+					parent.setRight(copy);
+				from[tail] = child;
+				to[tail++] = copy;
+			}
+		}
+		if (tasks != null)
+			tasks.parallelStream().forEach(SubtreeCopy::run);
+		for (int i = tail - 1; i >= 0; i--) // filhos vêm depois dos pais na ordem por nível
+			tree.refresh(to[i]);
+		return to[0];
+	}
+
+	// Cópia de uma subárvore feita por uma tarefa do modo paralelo.
+	private static class SubtreeCopy<E, F> {
+		private final BTPosition<E> src;
+		private final BTPosition<F> parent; // nodo da cópia que recebe o resultado
+		private final boolean left;
+		private final Function<? super E, ? extends F> f;
+		private final LinkedBinaryTree<F> tree;
+
+		SubtreeCopy(BTPosition<E> src, BTPosition<F> parent, boolean left, Function<? super E, ? extends F> f,
+				LinkedBinaryTree<F> tree) {
+			this.src = src;
+			this.parent = parent;
+			this.left = left;
+			this.f = f;
+			this.tree = tree;
+		}
+
+		void run() {
+			BTPosition<F> copy = copyNodes(src, f, tree, Integer.MAX_VALUE, null);
+			copy.setParent(parent);
+			if (left)
+				parent.setLeft(copy);
+			else
+				parent.setRight(copy);
+		}
+	}
+
+	// Métodos de construção em bloco
+	// Os nodos são ligados diretamente, sem checkPosition nem atualização de
+	// tamanho por inserção, em uma única passada O(n).
+
+	// Cria uma árvore balanceada cujo caminhamento inorder é a sequência ordenada dada.
+	public static <E> LinkedBinaryTree<E> fromSorted(E[] sorted) {
+		LinkedBinaryTree<E> tree = new LinkedBinaryTree<E>();
+		tree.root = tree.buildBalanced(sorted, 0, sorted.length - 1, null);
+		tree.size = sorted.length;
+		return tree;
+	}
+
+	// Cria uma árvore balanceada a partir de uma coleção iterável ordenada.
+	@SuppressWarnings("unchecked")
+	public static <E> LinkedBinaryTree<E> fromSorted(Iterable<E> sorted) {
+		ArrayList<E> elements = new ArrayList<E>();
+		for (E e : sorted)
+			elements.add(e);
+		return fromSorted((E[]) elements.toArray());
+	}
+
+	// Cria uma árvore balanceada a partir de um stream ordenado.
+	@SuppressWarnings("unchecked")
+	public static <E> LinkedBinaryTree<E> fromSorted(Stream<E> sorted) {
+		return fromSorted((E[]) sorted.toArray());
+	}
+
+	// Cria a árvore descrita pelos seus caminhamentos prefixado e inorder. Os
+	// nodos são casados pelos elementos (equals), então os elementos não podem
+	// ser nulos nem repetidos, e as duas sequências devem ter os mesmos elementos.
+	@SuppressWarnings("unchecked")
+	public static <E> LinkedBinaryTree<E> fromPreorderInorder(E[] preorder, E[] inorder) {
+		if (preorder.length != inorder.length)
+			throw new IllegalArgumentException("Sequências de tamanhos diferentes");
+		HashSet<E> elements = new HashSet<E>();
+		for (E e : preorder) {
+			if (e == null)
+				throw new IllegalArgumentException("Elemento nulo");
+			if (!elements.add(e))
+				throw new IllegalArgumentException("Elemento repetido: " + e);
+		}
+		for (E e : inorder)
+			if (!elements.remove(e))
+				throw new IllegalArgumentException("Sequências inconsistentes");
+		LinkedBinaryTree<E> tree = new LinkedBinaryTree<E>();
+		int n = preorder.length;
+		if (n == 0)
+			return tree;
+		BTPosition<E>[] nodes = (BTPosition<E>[]) new BTPosition<?>[n]; // nodos em ordem prefixada
+		BTPosition<E>[] stack = (BTPosition<E>[]) new BTPosition<?>[n];
+		int top = 0;
+		nodes[0] = tree.createNode(preorder[0], null, null, null);
+		stack[top++] = nodes[0];
+		int j = 0; // próximo elemento do caminhamento inorder
+		for (int i = 1; i < n; i++) {
+			BTPosition<E> parent = stack[top - 1];
+			if (!parent.element().equals(inorder[j])) { // ainda descendo pela esquerda
+				nodes[i] = tree.createNode(preorder[i], parent, null, null);
+				parent.setLeft(nodes[i]);
+			} else {
+				while (top > 0 && stack[top - 1].element().equals(inorder[j])) {
+					parent = stack[--top];
+					j++;
+				}
+				if (j >= n)
+					throw new IllegalArgumentException("Sequências inconsistentes");
+				nodes[i] = tree.createNode(preorder[i], parent, null, null);
+				parent.setRight(nodes[i]);
+			}
+			stack[top++] = nodes[i];
+		}
+		for (int i = n - 1; i >= 0; i--) // filhos vêm depois dos pais na ordem prefixada
+			tree.refresh(nodes[i]);
+		tree.root = nodes[0];
+		tree.size = n;
+		return tree;
+	}
+
+	// Cria a árvore descrita pelo caminhamento por nível em formato de heap: os
+	// filhos do elemento i estão em 2i+1 e 2i+2, e null indica um nodo ausente.
+	@SuppressWarnings("unchecked")
+	public static <E> LinkedBinaryTree<E> fromLevelOrder(E[] levels) {
+		LinkedBinaryTree<E> tree = new LinkedBinaryTree<E>();
+		int n = levels.length;
+		if (n == 0 || levels[0] == null)
+			return tree;
+		BTPosition<E>[] nodes = (BTPosition<E>[]) new BTPosition<?>[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (levels[i] == null)
+				continue;
+			BTPosition<E> parent = (i == 0) ? null : nodes[(i - 1) / 2];
+			if (i > 0 && parent == null)
+				throw new IllegalArgumentException("Nodo sem pai na posição " + i);
+			nodes[i] = tree.createNode(levels[i], parent, null, null);
+			if (parent != null) {
+				if (i % 2 == 1)
+					parent.setLeft(nodes[i]);
+				else
+					parent.setRight(nodes[i]);
+			}
+			count++;
+		}
+		for (int i = n - 1; i >= 0; i--)
+			if (nodes[i] != null)
+				tree.refresh(nodes[i]);
+		tree.root = nodes[0];
+		tree.size = count;
+		return tree;
+	}
+
+	// Liga os elementos sorted[lo..hi] em uma subárvore balanceada e retorna sua raiz.
+	private BTPosition<E> buildBalanced(E[] sorted, int lo, int hi, BTPosition<E> parent) {
+		if (lo > hi)
+			return null;
+		int mid = (lo + hi) >>> 1;
+		BTPosition<E> node = createNode(sorted[mid], parent, null, null);
+		node.setLeft(buildBalanced(sorted, lo, mid - 1, node));
+		node.setRight(buildBalanced(sorted, mid + 1, hi, node));
+		refresh(node);
+		return node;
+	}
+
+	// Se v é um nodo desta árvore, converte para BTPosition, caso contrário
+	// lança exceção. Um nodo validado na geração atual da árvore é aceito em
+	// O(1); após uma divisão da árvore a validação sobe até a raiz uma única vez.
 	protected BTPosition<E> checkPosition(Position<E> v) throws InvalidPositionException {
 		if (v == null || !(v instanceof BTPosition))
 			throw new InvalidPositionException("The position is invalid");
-		return (BTPosition<E>) v;
+		BTPosition<E> vv = (BTPosition<E>) v;
+		if (vv.getGeneration() == generation && vv.getOwner() == owner)
+			return vv;
+		TreeOwner o = vv.getOwner();
+		if (o == null)
+			throw new InvalidPositionException("The position was removed from the tree");
+		if (o.resolve() != owner.resolve())
+			throw new InvalidPositionException("The position belongs to another tree");
+		BTPosition<E> top = vv; // mesma família: confere se o nodo ainda está nesta árvore
+		while (top.getParent() != null)
+			top = top.getParent();
+		if (top != root)
+			throw new InvalidPositionException("The position belongs to another tree");
+		vv.setOwner(owner);
+		vv.setGeneration(generation);
+		return vv;
+	}
+
+	// Se T é uma árvore encadeada diferente desta, converte para LinkedBinaryTree,
+	// caso contrário lança exceção
+	protected LinkedBinaryTree<E> checkTree(BinaryTree<E> T) throws InvalidPositionException {
+		if (T == null || !(T instanceof LinkedBinaryTree))
+			throw new InvalidPositionException("The tree is invalid");
+		if (T == this)
+			throw new InvalidPositionException("Cannot attach a tree to itself");
+		return (LinkedBinaryTree<E>) T;
+	}
+
+	// Transfere os nodos desta árvore para a árvore de destino sem percorrê-los e
+	// deixa esta árvore vazia.
+	protected void moveTo(LinkedBinaryTree<E> target) {
+		owner.forwardTo(target.owner);
+		root = null;
+		size = 0;
+		modCount++;
+		owner = new TreeOwner();
+		generation = nextGeneration();
+	}
+
+	// Retorna uma nova geração, diferente de todas as já usadas
+	protected static long nextGeneration() {
+		return GENERATIONS.incrementAndGet();
 	}
 
 	// Cria um novo nodo de árvore binária
 	protected BTPosition<E> createNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
-		return new BTNode<E>(element, parent, left, right);
+		return initNode(new BTNode<E>(element, parent, left, right));
+	}
+
+	// Associa um nodo recém-criado a esta árvore
+	protected BTPosition<E> initNode(BTPosition<E> node) {
+		node.setOwner(owner);
+		node.setGeneration(generation);
+		refresh(node);
+		return node;
 	}
 
 	// Cria uma lista que armazena os nodos da subárvore de um nodo ordenados de
@@ -270,12 +1358,18 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 	}
 	
 	public LinkedBinaryTree<String> buildExpression(String[] expression) {
+		return buildExpression(expression, LinkedBinaryTree::new);
+	}
+
+	// Monta a árvore da expressão usando árvores criadas pela fábrica dada.
+	protected static LinkedBinaryTree<String> buildExpression(String[] expression,
+			Supplier<? extends LinkedBinaryTree<String>> factory) {
 		NodeStack<LinkedBinaryTree<String>> stack = new NodeStack<LinkedBinaryTree<String>>();
 		
 		for (int i = 0; i < expression.length; i++) {
 			String c = expression[i];
 			if(isVariableOrOperator(c)) {
-				LinkedBinaryTree<String> newArvore = new LinkedBinaryTree<String> ();
+				LinkedBinaryTree<String> newArvore = factory.get();
 				newArvore.addRoot(c);
 				stack.push(newArvore);
 			}else if (c.equals("(")) {
@@ -292,69 +1386,64 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
 		return stack.pop();
 	}
 	
-	private boolean isVariableOrOperator(String str) {
+	private static boolean isVariableOrOperator(String str) {
 		try {
             Double.parseDouble(str);
             return true;
         } catch (NumberFormatException e) {
-            return str.matches("[+\\-*/]");
+            return str.matches("[+\\-*/]|[A-Za-z_]\\w*"); // operador ou nome de variável
         }
 	}
 	
 	public void printExpression(LinkedBinaryTree<E> tree, Position<E> node) {
-        if (tree.isInternal(node)) {
-            System.out.print("(");
-        }
-
-        if (tree.hasLeft(node)) {
-            printExpression(tree, tree.left(node));
-        }
-
-        if (tree.isInternal(node)) {
-            System.out.print(node.element());
-        } else {
-            System.out.print(node.element());
-        }
-
-        if (tree.hasRight(node)) {
-            printExpression(tree, tree.right(node));
-        }
-
-        if (tree.isInternal(node)) {
-            System.out.print(")");
-        }
-    }
+		new EulerTour<E, Void>() {
+			protected void visitExternal(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitLeft(Position<E> v, TourResult<Void> r) { System.out.print("("); }
+			protected void visitBelow(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitRight(Position<E> v, TourResult<Void> r) { System.out.print(")"); }
+		}.execute(tree, node);
+	}
 	
 	public void binaryPostorder(LinkedBinaryTree<E> tree, Position<E> node) {
-		if(tree.hasLeft(node)) binaryPostorder(tree, tree.left(node));
-		if(tree.hasRight(node)) binaryPostorder(tree, tree.right(node));
-		System.out.print(node.element());
+		new EulerTour<E, Void>() {
+			protected void visitExternal(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitRight(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+		}.execute(tree, node);
 	}
 
 	public double evaluateExpression(LinkedBinaryTree<E> tree, Position<E> node) {
-        if (tree.isInternal(node)) {
-            E operator = node.element();
-            if (isOperator(operator)) {
-                double x = evaluateExpression(tree, tree.left(node));
-                double y = evaluateExpression(tree, tree.right(node));
-                return calculate(operator, x, y);
-            } else {
-                throw new IllegalArgumentException("Operador inválido: " + operator);
-            }
-        } else {
-            try {
-                return Double.parseDouble(node.element().toString());
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Valor inválido: " + node.element());
-            }
+		return new EulerTour<E, Double>() {
+			protected void visitExternal(Position<E> v, TourResult<Double> r) {
+				r.out = value(v.element());
+			}
+			protected void visitLeft(Position<E> v, TourResult<Double> r) {
+				if (!isOperator(v.element()))
+					throw new IllegalArgumentException("Operador inválido: " + v.element());
+				if (!tree.hasLeft(v)) // antes de avaliar a subárvore da direita
+					throw new BoundaryViolationException("No left child");
+			}
+			protected void visitRight(Position<E> v, TourResult<Double> r) {
+				if (r.right == null)
+					throw new BoundaryViolationException("No right child");
+				r.out = calculate(v.element(), r.left, r.right);
+			}
+		}.execute(tree, node);
+	}
+
+    // Converte o elemento de um nodo externo em número.
+    protected double value(E element) {
+        try {
+            return Double.parseDouble(element.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido: " + element);
         }
     }
 
-    private boolean isOperator(E element) {
+    protected boolean isOperator(E element) {
         return element.equals("+") || element.equals("-") || element.equals("*") || element.equals("/");
     }
 
-    private double calculate(E operator, double x, double y) {
+    protected double calculate(E operator, double x, double y) {
         switch (operator.toString()) {
             case "+":
                 return x + y;
@@ -373,9 +1462,10 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
     }
     
     public void binaryInOrder(LinkedBinaryTree<E> tree, Position<E> node) {
-    	if(tree.hasLeft(node)) binaryInOrder(tree, tree.left(node));
-    	System.out.print(node.element());
-    	if(tree.hasRight(node)) binaryInOrder(tree, tree.right(node));
+		new EulerTour<E, Void>() {
+			protected void visitExternal(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitBelow(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+		}.execute(tree, node);
     }
     
     public LinkedBinaryTree<Integer> makerBtSearch(){
@@ -397,11 +1487,16 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
     }
     
     public void eulerTour(LinkedBinaryTree<E> tree, Position<E> node) {
-    	System.out.print(node.element());
-    	if(tree.hasLeft(node)) eulerTour(tree, tree.left(node));
-    	System.out.print(node.element());
-    	if(tree.hasRight(node)) eulerTour(tree, tree.right(node));
-    	System.out.print(node.element());
+		new EulerTour<E, Void>() {
+			protected void visitExternal(Position<E> v, TourResult<Void> r) {
+				System.out.print(v.element()); // as três visitas coincidem em um nodo externo
+				System.out.print(v.element());
+				System.out.print(v.element());
+			}
+			protected void visitLeft(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitBelow(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+			protected void visitRight(Position<E> v, TourResult<Void> r) { System.out.print(v.element()); }
+		}.execute(tree, node);
     }
     
     public int countLeftExternalNodes() {
@@ -413,25 +1508,15 @@ public class LinkedBinaryTree<E> implements BinaryTree<E> {
     }
     
     private int countExternalNodes(Position<E> v) {
-        if (v == null) {
-            return 0;
-        }
-
-        int count = 0;
-        
-        if (isExternal(v)) {
-            count = 1;
-        }
-
-        if (hasLeft(v)) {
-            count += countExternalNodes(left(v)); 
-        }
-
-        if (hasRight(v)) {
-            count += countExternalNodes(right(v));
-        }
-
-        return count;
+		if (v == null) {
+			return 0;
+		}
+		return new EulerTour<E, Integer>() {
+			protected void visitExternal(Position<E> w, TourResult<Integer> r) { r.out = 1; }
+			protected void visitRight(Position<E> w, TourResult<Integer> r) {
+				r.out = (r.left == null ? 0 : r.left) + (r.right == null ? 0 : r.right);
+			}
+		}.execute(this, v);
     }
     
 
@@ -0,0 +1,179 @@
+package source;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Function;
+import exceptions.BoundaryViolationException;
+import exceptions.EmptyTreeException;
+import exceptions.InvalidPositionException;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Visão somente de leitura de uma LinkedBinaryTree (ou da subárvore de um de
+// seus nodos) com os elementos transformados por uma função, sem cópia. Cada
+// posição da visão apenas envolve um nodo da árvore, e a função só é aplicada
+// quando element() é chamado, a cada chamada. A visão acompanha as alterações
+// feitas na árvore; o tamanho vem do tamanho guardado nos nodos, em O(1).
+
+// Duas posições da visão são iguais se envolvem o mesmo nodo. Posições da
+// árvore inteira são validadas em O(1); as de uma subárvore, em O(profundidade).
+
+public class MappedView<E, F> implements BinaryTree<F> {
+
+	// Posição da visão: um nodo da árvore original
+	private static class MappedPosition<E, F> implements Position<F> {
+		private final MappedView<E, F> view;
+		private final BTPosition<E> node;
+
+		MappedPosition(MappedView<E, F> view, BTPosition<E> node) {
+			this.view = view;
+			this.node = node;
+		}
+
+		public F element() {
+			return view.f.apply(node.element());
+		}
+
+		public boolean equals(Object o) {
+			return (o instanceof MappedPosition && ((MappedPosition<?, ?>) o).view == view
+					&& ((MappedPosition<?, ?>) o).node == node);
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(node);
+		}
+
+		public String toString() {
+			return String.valueOf(element());
+		}
+	}
+
+	private final LinkedBinaryTree<E> tree;
+	private final BTPosition<E> top; // raiz da visão, ou null para a árvore inteira
+	private final Function<? super E, ? extends F> f;
+
+	MappedView(LinkedBinaryTree<E> tree, BTPosition<E> top, Function<? super E, ? extends F> f) {
+		this.tree = tree;
+		this.top = top;
+		this.f = f;
+	}
+
+	public int size() {
+		return (top == null) ? tree.size() : tree.checkPosition(top).getSubtreeSize();
+	}
+
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	public Position<F> root() throws EmptyTreeException {
+		return wrap((top == null) ? (BTPosition<E>) tree.root() : tree.checkPosition(top));
+	}
+
+	public boolean isRoot(Position<F> v) throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		return (top == null) ? (vv.getParent() == null) : (vv == top);
+	}
+
+	public Position<F> parent(Position<F> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> vv = checkPosition(v);
+		if (vv == top || vv.getParent() == null)
+			throw new BoundaryViolationException("No parent");
+		return wrap(vv.getParent());
+	}
+
+	public Position<F> left(Position<F> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> l = checkPosition(v).getLeft();
+		if (l == null)
+			throw new BoundaryViolationException("No left child");
+		return wrap(l);
+	}
+
+	public Position<F> right(Position<F> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> r = checkPosition(v).getRight();
+		if (r == null)
+			throw new BoundaryViolationException("No right child");
+		return wrap(r);
+	}
+
+	public boolean hasLeft(Position<F> v) throws InvalidPositionException {
+		return (checkPosition(v).getLeft() != null);
+	}
+
+	public boolean hasRight(Position<F> v) throws InvalidPositionException {
+		return (checkPosition(v).getRight() != null);
+	}
+
+	public Iterable<Position<F>> children(Position<F> v) throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		PositionList<Position<F>> children = new NodePositionList<Position<F>>();
+		if (vv.getLeft() != null)
+			children.addLast(wrap(vv.getLeft()));
+		if (vv.getRight() != null)
+			children.addLast(wrap(vv.getRight()));
+		return children;
+	}
+
+	public boolean isInternal(Position<F> v) throws InvalidPositionException {
+		return !isExternal(v);
+	}
+
+	public boolean isExternal(Position<F> v) throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		return (vv.getLeft() == null && vv.getRight() == null);
+	}
+
+	// A função não tem inversa: a visão é somente de leitura.
+	public F replace(Position<F> v, F e) {
+		throw new UnsupportedOperationException("Mapped view is read-only");
+	}
+
+	// Retorna as posições em ordem prefixada, criadas sob demanda.
+	public Iterable<Position<F>> positions() {
+		return () -> {
+			Iterator<BTPosition<E>> it = nodes();
+			return new Iterator<Position<F>>() {
+				public boolean hasNext() { return it.hasNext(); }
+				public Position<F> next() { return wrap(it.next()); }
+			};
+		};
+	}
+
+	// Retorna os elementos transformados em ordem prefixada, calculados sob demanda.
+	public Iterator<F> iterator() {
+		Iterator<BTPosition<E>> it = nodes();
+		return new Iterator<F>() {
+			public boolean hasNext() { return it.hasNext(); }
+			public F next() { return f.apply(it.next().element()); }
+		};
+	}
+
+	// Retorna uma visão com a composição das duas funções, sem camadas extras.
+	public <G> MappedView<E, G> mapView(Function<? super F, ? extends G> g) {
+		return new MappedView<E, G>(tree, top, f.andThen(g));
+	}
+
+	private Iterator<BTPosition<E>> nodes() {
+		if (top == null && tree.isEmpty())
+			return Collections.emptyIterator();
+		return SubtreeView.preorder((top == null) ? (BTPosition<E>) tree.root() : tree.checkPosition(top));
+	}
+
+	private Position<F> wrap(BTPosition<E> node) {
+		return new MappedPosition<E, F>(this, node);
+	}
+
+	// Aceita apenas posições desta visão cujo nodo ainda está na árvore (e na
+	// subárvore do topo).
+	@SuppressWarnings("unchecked")
+	private BTPosition<E> checkPosition(Position<F> v) throws InvalidPositionException {
+		if (!(v instanceof MappedPosition) || ((MappedPosition<?, ?>) v).view != this)
+			throw new InvalidPositionException("The position is not in the view");
+		BTPosition<E> vv = tree.checkPosition(((MappedPosition<E, F>) v).node);
+		if (top != null && !SubtreeView.contains(top, vv))
+			throw new InvalidPositionException("The position is not in the view");
+		return vv;
+	}
+
+}
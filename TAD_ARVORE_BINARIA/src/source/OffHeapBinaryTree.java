@@ -0,0 +1,431 @@
+package source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import exceptions.BoundaryViolationException;
+import exceptions.EmptyTreeException;
+import exceptions.InvalidPositionException;
+import exceptions.NonEmptyTreeException;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Árvore binária de elementos long guardada fora da heap, em ByteBuffers
+// diretos ou mapeados de um arquivo. Cada nodo ocupa um registro de 24 bytes
+// (pai, filho da esquerda, filho da direita, carimbo e valor), identificado
+// pelo seu índice; o índice 0 guarda o cabeçalho e também serve como "nenhum
+// nodo". Os registros ficam em blocos de tamanho fixo alocados sob demanda, e
+// os registros removidos são reaproveitados por uma lista de livres.
+
+// Como não há objetos por nodo na heap, o coletor de lixo não percorre a
+// árvore e as pausas não crescem com ela. As posições entregues ao usuário são
+// objetos pequenos criados na navegação; o carimbo do registro muda quando o
+// nodo é removido, o que invalida as posições antigas.
+
+// close() encerra o tempo de vida da árvore: grava e fecha o arquivo, se
+// mapeado, e solta as referências para os blocos; qualquer uso posterior gera
+// IllegalStateException. A memória dos blocos (diretos ou mapeados) não é
+// liberada em close(): o Java não oferece uma forma portável de fazê-lo, e ela
+// é devolvida quando o coletor de lixo recolhe os ByteBuffers.
+
+// No modo com arquivo os registros são gravados sempre em little-endian, para
+// que o arquivo possa ser lido em máquinas de qualquer ordem de bytes; em
+// memória direta é usada a ordem nativa. Valores int e double são guardados no
+// mesmo campo de 64 bits.
+
+public class OffHeapBinaryTree implements BinaryTree<Long>, AutoCloseable {
+
+	// Layout dos registros
+	private static final int RECORD = 24;
+	private static final int PARENT = 0, LEFT = 4, RIGHT = 8, STAMP = 12, VALUE = 16;
+	// Layout do cabeçalho (registro 0)
+	private static final int ROOT = 0, SIZE = 4, USED = 8, FREE = 12, MAGIC = 16;
+	private static final long MAGIC_NUMBER = 0x4F666648656170L; // "OffHeap"
+
+	private static final int CHUNK_SHIFT = 16; // registros por bloco: 2^16
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+	private static final long CHUNK_BYTES = (long) RECORD << CHUNK_SHIFT;
+
+	private ByteBuffer[] chunks; // null depois de close
+	private int chunkCount;
+	private final FileChannel channel; // null se a memória não vem de um arquivo
+
+	// Posição de um nodo: o índice do registro e o carimbo que ele tinha.
+	private static final class Node implements Position<Long> {
+		final OffHeapBinaryTree tree;
+		final int index;
+		final int stamp;
+
+		Node(OffHeapBinaryTree tree, int index, int stamp) {
+			this.tree = tree;
+			this.index = index;
+			this.stamp = stamp;
+		}
+
+		public Long element() {
+			return tree.getLong(this);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Node))
+				return false;
+			Node n = (Node) o;
+			return n.tree == tree && n.index == index && n.stamp == stamp;
+		}
+
+		public int hashCode() {
+			return index * 31 + stamp;
+		}
+	}
+
+	// Cria uma árvore vazia em memória direta.
+	public OffHeapBinaryTree() {
+		channel = null;
+		chunks = new ByteBuffer[4];
+		initHeader();
+	}
+
+	private OffHeapBinaryTree(FileChannel channel) throws IOException {
+		this.channel = channel;
+		chunks = new ByteBuffer[4];
+		if (channel.size() == 0) {
+			initHeader();
+			return;
+		}
+		ensureChunk(0);
+		if (chunks[0].getLong(MAGIC) != MAGIC_NUMBER)
+			throw new IllegalArgumentException("O arquivo não contém uma árvore");
+		int used = header(USED);
+		for (int c = 1; c <= (used - 1) >>> CHUNK_SHIFT; c++)
+			ensureChunk(c);
+	}
+
+	// Abre (ou cria, se vazio) um arquivo com uma árvore e mapeia os seus
+	// registros diretamente para a memória.
+	public static OffHeapBinaryTree map(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			return new OffHeapBinaryTree(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	// Métodos de acesso
+
+	public int size() {
+		return header(SIZE);
+	}
+
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	public Position<Long> root() throws EmptyTreeException {
+		int r = header(ROOT);
+		if (r == 0)
+			throw new EmptyTreeException("The tree is empty");
+		return position(r);
+	}
+
+	public Position<Long> parent(Position<Long> v) throws InvalidPositionException, BoundaryViolationException {
+		int p = field(checkPosition(v), PARENT);
+		if (p == 0)
+			throw new BoundaryViolationException("No parent");
+		return position(p);
+	}
+
+	public Position<Long> left(Position<Long> v) throws InvalidPositionException, BoundaryViolationException {
+		int l = field(checkPosition(v), LEFT);
+		if (l == 0)
+			throw new BoundaryViolationException("No left child");
+		return position(l);
+	}
+
+	public Position<Long> right(Position<Long> v) throws InvalidPositionException, BoundaryViolationException {
+		int r = field(checkPosition(v), RIGHT);
+		if (r == 0)
+			throw new BoundaryViolationException("No right child");
+		return position(r);
+	}
+
+	public boolean hasLeft(Position<Long> v) throws InvalidPositionException {
+		return (field(checkPosition(v), LEFT) != 0);
+	}
+
+	public boolean hasRight(Position<Long> v) throws InvalidPositionException {
+		return (field(checkPosition(v), RIGHT) != 0);
+	}
+
+	public boolean isInternal(Position<Long> v) throws InvalidPositionException {
+		int i = checkPosition(v);
+		return (field(i, LEFT) != 0 || field(i, RIGHT) != 0);
+	}
+
+	public boolean isExternal(Position<Long> v) throws InvalidPositionException {
+		return !isInternal(v);
+	}
+
+	public boolean isRoot(Position<Long> v) throws InvalidPositionException {
+		return (field(checkPosition(v), PARENT) == 0);
+	}
+
+	public Iterable<Position<Long>> children(Position<Long> v) throws InvalidPositionException {
+		int i = checkPosition(v);
+		PositionList<Position<Long>> children = new NodePositionList<Position<Long>>();
+		if (field(i, LEFT) != 0)
+			children.addLast(position(field(i, LEFT)));
+		if (field(i, RIGHT) != 0)
+			children.addLast(position(field(i, RIGHT)));
+		return children;
+	}
+
+	// Retorna uma coleção iterável (prefixada) contendo os nodos da árvore.
+	public Iterable<Position<Long>> positions() {
+		PositionList<Position<Long>> positions = new NodePositionList<Position<Long>>();
+		int r = header(ROOT);
+		if (r == 0)
+			return positions;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = r;
+		while (top > 0) {
+			int i = stack[--top];
+			positions.addLast(position(i));
+			if (top + 2 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			if (field(i, RIGHT) != 0)
+				stack[top++] = field(i, RIGHT);
+			if (field(i, LEFT) != 0)
+				stack[top++] = field(i, LEFT);
+		}
+		return positions;
+	}
+
+	public Iterator<Long> iterator() {
+		PositionList<Long> elements = new NodePositionList<Long>();
+		for (Position<Long> pos : positions())
+			elements.addLast(pos.element());
+		return elements.iterator();
+	}
+
+	// Retorna o valor de um nodo.
+	public long getLong(Position<Long> v) throws InvalidPositionException {
+		int i = checkPosition(v);
+		return chunk(i).getLong(offset(i) + VALUE);
+	}
+
+	// Retorna o valor de um nodo interpretado como double.
+	public double getDouble(Position<Long> v) throws InvalidPositionException {
+		return Double.longBitsToDouble(getLong(v));
+	}
+
+	// Métodos de atualização
+
+	// Substitui o elemento armazenado no nodo.
+	public Long replace(Position<Long> v, Long e) throws InvalidPositionException {
+		return setLong(v, e);
+	}
+
+	// Substitui o valor de um nodo, retornando o antigo.
+	public long setLong(Position<Long> v, long value) throws InvalidPositionException {
+		int i = checkPosition(v);
+		long old = chunk(i).getLong(offset(i) + VALUE);
+		chunk(i).putLong(offset(i) + VALUE, value);
+		return old;
+	}
+
+	// Substitui o valor de um nodo por um double, retornando o antigo.
+	public double setDouble(Position<Long> v, double value) throws InvalidPositionException {
+		return Double.longBitsToDouble(setLong(v, Double.doubleToRawLongBits(value)));
+	}
+
+	// Insere a raiz em uma árvore vazia.
+	public Position<Long> addRoot(long value) throws NonEmptyTreeException {
+		if (!isEmpty())
+			throw new NonEmptyTreeException("Tree already has a root");
+		int r = allocate(0, value);
+		setHeader(ROOT, r);
+		return position(r);
+	}
+
+	// Insere o filho da esquerda em um nodo.
+	public Position<Long> insertLeft(Position<Long> v, long value) throws InvalidPositionException {
+		return insert(checkPosition(v), LEFT, value, "Node already has a left child");
+	}
+
+	// Insere o filho da direita em um nodo.
+	public Position<Long> insertRight(Position<Long> v, long value) throws InvalidPositionException {
+		return insert(checkPosition(v), RIGHT, value, "Node already has a right child");
+	}
+
+	// Remove um nodo com zero ou um filho, devolvendo o registro à lista de livres.
+	public long remove(Position<Long> v) throws InvalidPositionException {
+		int i = checkPosition(v);
+		int l = field(i, LEFT), r = field(i, RIGHT);
+		if (l != 0 && r != 0)
+			throw new InvalidPositionException("Cannot remove node with two children");
+		int child = (l != 0) ? l : r;
+		int parent = field(i, PARENT);
+		if (child != 0)
+			setField(child, PARENT, parent);
+		if (parent == 0)
+			setHeader(ROOT, child);
+		else if (field(parent, LEFT) == i)
+			setField(parent, LEFT, child);
+		else
+			setField(parent, RIGHT, child);
+		long value = chunk(i).getLong(offset(i) + VALUE);
+		free(i);
+		return value;
+	}
+
+	// Grava no arquivo as alterações ainda em memória (nada faz fora de um arquivo).
+	public void force() {
+		checkOpen();
+		if (channel != null)
+			for (int c = 0; c < chunkCount; c++)
+				((MappedByteBuffer) chunks[c]).force();
+	}
+
+	// Encerra o tempo de vida da árvore: grava e fecha o arquivo, se houver, e
+	// solta os blocos. A memória deles só é devolvida pelo coletor de lixo.
+	public void close() {
+		if (chunks == null)
+			return;
+		try {
+			force();
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			chunks = null;
+			chunkCount = 0;
+		}
+	}
+
+	// Métodos auxiliares
+
+	private Position<Long> insert(int i, int side, long value, String occupied) {
+		if (field(i, side) != 0)
+			throw new InvalidPositionException(occupied);
+		int w = allocate(i, value);
+		setField(i, side, w);
+		return position(w);
+	}
+
+	// Reserva um registro, de preferência da lista de livres.
+	private int allocate(int parent, long value) {
+		int i = header(FREE);
+		if (i != 0) {
+			setHeader(FREE, field(i, PARENT));
+		} else {
+			i = header(USED);
+			if (i < 0)
+				throw new IllegalStateException("Tree is full");
+			ensureChunk(i >>> CHUNK_SHIFT);
+			setHeader(USED, i + 1);
+		}
+		ByteBuffer b = chunk(i);
+		int o = offset(i);
+		b.putInt(o + PARENT, parent);
+		b.putInt(o + LEFT, 0);
+		b.putInt(o + RIGHT, 0);
+		b.putInt(o + STAMP, b.getInt(o + STAMP) + 1); // ímpar: registro em uso
+		b.putLong(o + VALUE, value);
+		setHeader(SIZE, header(SIZE) + 1);
+		return i;
+	}
+
+	private void free(int i) {
+		ByteBuffer b = chunk(i);
+		int o = offset(i);
+		b.putInt(o + STAMP, b.getInt(o + STAMP) + 1); // par: registro livre
+		b.putInt(o + LEFT, 0);
+		b.putInt(o + RIGHT, 0);
+		b.putInt(o + PARENT, header(FREE));
+		setHeader(FREE, i);
+		setHeader(SIZE, header(SIZE) - 1);
+	}
+
+	// Verifica se a posição é um nodo vivo desta árvore e retorna o seu índice.
+	private int checkPosition(Position<Long> v) throws InvalidPositionException {
+		checkOpen();
+		if (!(v instanceof Node) || ((Node) v).tree != this)
+			throw new InvalidPositionException("The position is invalid");
+		Node n = (Node) v;
+		if (field(n.index, STAMP) != n.stamp)
+			throw new InvalidPositionException("The position was removed from the tree");
+		return n.index;
+	}
+
+	private Position<Long> position(int i) {
+		return new Node(this, i, field(i, STAMP));
+	}
+
+	private void initHeader() {
+		ensureChunk(0);
+		chunks[0].putLong(MAGIC, MAGIC_NUMBER);
+		setHeader(USED, 1);
+	}
+
+	// Garante que o bloco c exista, alocando-o ou mapeando-o do arquivo.
+	private void ensureChunk(int c) {
+		if (c < chunkCount)
+			return;
+		if (c >= chunks.length)
+			chunks = Arrays.copyOf(chunks, chunks.length * 2);
+		try {
+			if (channel == null)
+				chunks[c] = ByteBuffer.allocateDirect((int) CHUNK_BYTES).order(ByteOrder.nativeOrder());
+			else // ordem fixa: o arquivo não depende da máquina que o gravou
+				chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, c * CHUNK_BYTES, CHUNK_BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		chunkCount = c + 1;
+	}
+
+	private void checkOpen() {
+		if (chunks == null)
+			throw new IllegalStateException("The tree is closed");
+	}
+
+	private ByteBuffer chunk(int i) {
+		return chunks[i >>> CHUNK_SHIFT];
+	}
+
+	private static int offset(int i) {
+		return (i & CHUNK_MASK) * RECORD;
+	}
+
+	private int field(int i, int f) {
+		return chunk(i).getInt(offset(i) + f);
+	}
+
+	private void setField(int i, int f, int value) {
+		chunk(i).putInt(offset(i) + f, value);
+	}
+
+	private int header(int f) {
+		checkOpen();
+		return chunks[0].getInt(f);
+	}
+
+	private void setHeader(int f, int value) {
+		chunks[0].putInt(f, value);
+	}
+
+}
@@ -0,0 +1,493 @@
+package source;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import exceptions.BoundaryViolationException;
+import exceptions.EmptyTreeException;
+import exceptions.InvalidPositionException;
+import exceptions.NonEmptyTreeException;
+import memoria.Footprint;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Árvore binária persistente (imutável). Cada atualização retorna uma nova versão
+// da árvore, que compartilha com a versão anterior todas as subárvores não
+// afetadas: só os nodos do caminho entre a raiz e o nodo alterado são copiados,
+// então uma atualização custa O(profundidade) nodos novos e cada versão guardada
+// ocupa memória proporcional ao que mudou.
+
+// Os nodos não guardam referência para o pai (isso impediria o compartilhamento).
+// As posições são cursores que lembram o caminho desde a raiz da versão em que
+// foram obtidas, e só valem nessa versão.
+
+// Para aplicar muitas alterações seguidas sem copiar o caminho a cada uma, use
+// toBuilder(): o Builder altera no lugar os nodos que ele próprio já copiou e
+// persistent() publica o resultado como uma nova versão.
+
+public class PersistentBinaryTree<E> implements BinaryTree<E> {
+
+	// Nodo imutável depois de publicado. Só um Builder cujo token de edição é o
+	// mesmo do nodo pode alterá-lo.
+	protected static class Node<E> {
+		E element;
+		Node<E> left, right;
+		int size; // número de nodos da subárvore
+		int hash; // hash estrutural da subárvore, compatível com LinkedBinaryTree
+		Object edit; // token do Builder que criou o nodo (null se criado por uma versão)
+
+		Node(E element, Node<E> left, Node<E> right, Object edit) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			this.edit = edit;
+			refresh();
+		}
+
+		// Recalcula tamanho e hash a partir dos filhos
+		void refresh() {
+			size = 1 + (left == null ? 0 : left.size) + (right == null ? 0 : right.size);
+			hash = LinkedBinaryTree.combineHash(element,
+					left == null ? LinkedBinaryTree.NO_LEFT_HASH : left.hash,
+					right == null ? LinkedBinaryTree.NO_RIGHT_HASH : right.hash);
+		}
+	}
+
+	// Posição em uma versão: o nodo e o cursor do seu pai. O cursor é imutável;
+	// em um Builder, o nodo guardado pode ter sido copiado depois, e a cópia
+	// atual é obtida pelo Builder.
+	protected static class Cursor<E> implements Position<E> {
+		final Node<E> node;
+		final Cursor<E> parent;
+		final Object top; // raiz da versão ou Builder em que o cursor foi obtido
+
+		Cursor(Node<E> node, Cursor<E> parent, Object top) {
+			this.node = node;
+			this.parent = parent;
+			this.top = top;
+		}
+
+		public E element() { return current().element; }
+
+		// Retorna o nodo que o cursor descreve no estado atual.
+		@SuppressWarnings("unchecked")
+		Node<E> current() {
+			return (top instanceof Builder) ? ((Builder<E>) top).current(node) : node;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Cursor))
+				return false;
+			Cursor<?> c = (Cursor<?>) o;
+			return c.top == top && c.current() == current();
+		}
+
+		@SuppressWarnings("unchecked")
+		public int hashCode() {
+			return System.identityHashCode((top instanceof Builder) ? ((Builder<E>) top).origin(node) : node);
+		}
+	}
+
+	protected final Node<E> root; // raiz desta versão (null se vazia)
+
+	// Cria uma árvore persistente vazia.
+	public PersistentBinaryTree() {
+		this(null);
+	}
+
+	protected PersistentBinaryTree(Node<E> root) {
+		this.root = root;
+	}
+
+	// Métodos de acesso
+
+	public int size() {
+		return (root == null) ? 0 : root.size;
+	}
+
+	public boolean isEmpty() {
+		return (root == null);
+	}
+
+	public Position<E> root() throws EmptyTreeException {
+		if (root == null)
+			throw new EmptyTreeException("The tree is empty");
+		return new Cursor<E>(root, null, root);
+	}
+
+	public Position<E> parent(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		Cursor<E> c = checkPosition(v);
+		if (c.parent == null)
+			throw new BoundaryViolationException("No parent");
+		return c.parent;
+	}
+
+	public Position<E> left(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		Cursor<E> c = checkPosition(v);
+		if (c.node.left == null)
+			throw new BoundaryViolationException("No left child");
+		return new Cursor<E>(c.node.left, c, root);
+	}
+
+	public Position<E> right(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		Cursor<E> c = checkPosition(v);
+		if (c.node.right == null)
+			throw new BoundaryViolationException("No right child");
+		return new Cursor<E>(c.node.right, c, root);
+	}
+
+	public boolean hasLeft(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v).node.left != null);
+	}
+
+	public boolean hasRight(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v).node.right != null);
+	}
+
+	public boolean isInternal(Position<E> v) throws InvalidPositionException {
+		return (hasLeft(v) || hasRight(v));
+	}
+
+	public boolean isExternal(Position<E> v) throws InvalidPositionException {
+		return !isInternal(v);
+	}
+
+	public boolean isRoot(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v).parent == null);
+	}
+
+	public Iterable<Position<E>> children(Position<E> v) throws InvalidPositionException {
+		PositionList<Position<E>> children = new NodePositionList<Position<E>>();
+		if (hasLeft(v))
+			children.addLast(left(v));
+		if (hasRight(v))
+			children.addLast(right(v));
+		return children;
+	}
+
+	// Retorna uma coleção iterável (prefixada) contendo os nodos da árvore.
+	public Iterable<Position<E>> positions() {
+		PositionList<Position<E>> positions = new NodePositionList<Position<E>>();
+		if (root == null)
+			return positions;
+		ArrayList<Cursor<E>> stack = new ArrayList<Cursor<E>>();
+		stack.add(new Cursor<E>(root, null, root));
+		while (!stack.isEmpty()) {
+			Cursor<E> c = stack.remove(stack.size() - 1);
+			positions.addLast(c);
+			if (c.node.right != null)
+				stack.add(new Cursor<E>(c.node.right, c, root));
+			if (c.node.left != null)
+				stack.add(new Cursor<E>(c.node.left, c, root));
+		}
+		return positions;
+	}
+
+	public Iterator<E> iterator() {
+		PositionList<E> elements = new NodePositionList<E>();
+		for (Position<E> pos : positions())
+			elements.addLast(pos.element());
+		return elements.iterator();
+	}
+
+	// Uma versão não pode ser alterada: use update, que retorna uma nova versão.
+	public E replace(Position<E> v, E e) throws InvalidPositionException {
+		throw new UnsupportedOperationException("Persistent tree: use update");
+	}
+
+	// Retorna uma estimativa do espaço ocupado por esta versão. Nodos
+	// compartilhados com outras versões também são contados, já que esta versão
+	// os mantém vivos.
+	public Footprint footprint() {
+		Footprint f = new Footprint().addStructure(this);
+		ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+		if (root != null)
+			stack.push(root);
+		while (!stack.isEmpty()) {
+			Node<E> n = stack.pop();
+			f.addStructure(n).addElement(n.element);
+			if (n.left != null)
+				stack.push(n.left);
+			if (n.right != null)
+				stack.push(n.right);
+		}
+		return f;
+	}
+
+	// Retorna o hash estrutural da árvore, igual ao de uma LinkedBinaryTree com a
+	// mesma forma e os mesmos elementos.
+	public int structuralHash() {
+		return (root == null) ? 0 : root.hash;
+	}
+
+	// Métodos de atualização: cada um retorna uma nova versão
+
+	// Retorna uma versão com a raiz dada, a partir de uma árvore vazia.
+	public PersistentBinaryTree<E> addRoot(E e) throws NonEmptyTreeException {
+		if (root != null)
+			throw new NonEmptyTreeException("Tree already has a root");
+		return new PersistentBinaryTree<E>(new Node<E>(e, null, null, null));
+	}
+
+	// Retorna uma versão em que o elemento do nodo foi substituído.
+	public PersistentBinaryTree<E> update(Position<E> v, E e) throws InvalidPositionException {
+		Cursor<E> c = checkPosition(v);
+		return pathCopy(c, new Node<E>(e, c.node.left, c.node.right, null));
+	}
+
+	// Retorna uma versão em que o nodo ganhou um filho da esquerda.
+	public PersistentBinaryTree<E> insertLeft(Position<E> v, E e) throws InvalidPositionException {
+		Cursor<E> c = checkPosition(v);
+		if (c.node.left != null)
+			throw new InvalidPositionException("Node already has a left child");
+		Node<E> child = new Node<E>(e, null, null, null);
+		return pathCopy(c, new Node<E>(c.node.element, child, c.node.right, null));
+	}
+
+	// Retorna uma versão em que o nodo ganhou um filho da direita.
+	public PersistentBinaryTree<E> insertRight(Position<E> v, E e) throws InvalidPositionException {
+		Cursor<E> c = checkPosition(v);
+		if (c.node.right != null)
+			throw new InvalidPositionException("Node already has a right child");
+		Node<E> child = new Node<E>(e, null, null, null);
+		return pathCopy(c, new Node<E>(c.node.element, c.node.left, child, null));
+	}
+
+	// Retorna uma versão sem o nodo dado, que deve ter zero ou um filho.
+	public PersistentBinaryTree<E> remove(Position<E> v) throws InvalidPositionException {
+		Cursor<E> c = checkPosition(v);
+		if (c.node.left != null && c.node.right != null)
+			throw new InvalidPositionException("Cannot remove node with two children");
+		return pathCopy(c, (c.node.left != null) ? c.node.left : c.node.right);
+	}
+
+	// Retorna esta versão. Como versões não mudam, guardá-la já é um snapshot.
+	public PersistentBinaryTree<E> snapshot() {
+		return this;
+	}
+
+	// Retorna um Builder que parte desta versão.
+	public Builder<E> toBuilder() {
+		return new Builder<E>(root);
+	}
+
+	// Cria a nova versão trocando o nodo do cursor por replacement e copiando os
+	// ancestrais; todo o resto é compartilhado.
+	protected PersistentBinaryTree<E> pathCopy(Cursor<E> c, Node<E> replacement) {
+		Node<E> child = replacement;
+		for (Cursor<E> p = c.parent, below = c; p != null; below = p, p = p.parent) {
+			Node<E> n = p.node;
+			if (n.left == below.node)
+				child = new Node<E>(n.element, child, n.right, null);
+			else
+				child = new Node<E>(n.element, n.left, child, null);
+		}
+		return new PersistentBinaryTree<E>(child);
+	}
+
+	// Converte v para Cursor se ele foi obtido nesta versão, caso contrário lança exceção
+	@SuppressWarnings("unchecked")
+	protected Cursor<E> checkPosition(Position<E> v) throws InvalidPositionException {
+		if (v == null || !(v instanceof Cursor))
+			throw new InvalidPositionException("The position is invalid");
+		Cursor<E> c = (Cursor<E>) v;
+		if (c.top != root || root == null)
+			throw new InvalidPositionException("The position belongs to another version");
+		return c;
+	}
+
+	// Modo transiente: aplica várias alterações no lugar e publica uma nova versão.
+	// Cada nodo é copiado no máximo uma vez por Builder; os nodos copiados passam a
+	// pertencer ao Builder e as alterações seguintes sobre eles não copiam nada.
+	// Os cursores não são alterados pela cópia: o Builder guarda, para cada nodo
+	// compartilhado que copiou, a cópia que o substitui.
+	public static class Builder<E> {
+		private Node<E> root;
+		private Object edit = new Object(); // token de edição (null depois de persistent)
+		private final IdentityHashMap<Node<E>, Node<E>> copies = new IdentityHashMap<Node<E>, Node<E>>();
+		private final IdentityHashMap<Node<E>, Node<E>> origins = new IdentityHashMap<Node<E>, Node<E>>(); // cópia -> original
+
+		protected Builder(Node<E> root) {
+			this.root = root;
+		}
+
+		public int size() {
+			return (root == null) ? 0 : root.size;
+		}
+
+		public boolean isEmpty() {
+			return (root == null);
+		}
+
+		public Position<E> root() throws EmptyTreeException {
+			if (root == null)
+				throw new EmptyTreeException("The tree is empty");
+			return new Cursor<E>(root, null, this);
+		}
+
+		public Position<E> left(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+			Cursor<E> c = checkPosition(v);
+			Node<E> n = current(c.node);
+			if (n.left == null)
+				throw new BoundaryViolationException("No left child");
+			return new Cursor<E>(n.left, c, this);
+		}
+
+		public Position<E> right(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+			Cursor<E> c = checkPosition(v);
+			Node<E> n = current(c.node);
+			if (n.right == null)
+				throw new BoundaryViolationException("No right child");
+			return new Cursor<E>(n.right, c, this);
+		}
+
+		public boolean hasLeft(Position<E> v) throws InvalidPositionException {
+			return (current(checkPosition(v).node).left != null);
+		}
+
+		public boolean hasRight(Position<E> v) throws InvalidPositionException {
+			return (current(checkPosition(v).node).right != null);
+		}
+
+		public Position<E> addRoot(E e) throws NonEmptyTreeException {
+			checkOpen();
+			if (root != null)
+				throw new NonEmptyTreeException("Tree already has a root");
+			root = new Node<E>(e, null, null, edit);
+			return new Cursor<E>(root, null, this);
+		}
+
+		public E update(Position<E> v, E e) throws InvalidPositionException {
+			Cursor<E> c = checkPosition(v);
+			Node<E> n = own(c);
+			E old = n.element;
+			n.element = e;
+			refreshPath(c);
+			return old;
+		}
+
+		public Position<E> insertLeft(Position<E> v, E e) throws InvalidPositionException {
+			Cursor<E> c = checkPosition(v);
+			if (current(c.node).left != null)
+				throw new InvalidPositionException("Node already has a left child");
+			Node<E> n = own(c);
+			n.left = new Node<E>(e, null, null, edit);
+			refreshPath(c);
+			return new Cursor<E>(n.left, c, this);
+		}
+
+		public Position<E> insertRight(Position<E> v, E e) throws InvalidPositionException {
+			Cursor<E> c = checkPosition(v);
+			if (current(c.node).right != null)
+				throw new InvalidPositionException("Node already has a right child");
+			Node<E> n = own(c);
+			n.right = new Node<E>(e, null, null, edit);
+			refreshPath(c);
+			return new Cursor<E>(n.right, c, this);
+		}
+
+		public E remove(Position<E> v) throws InvalidPositionException {
+			Cursor<E> c = checkPosition(v);
+			Node<E> n = current(c.node);
+			if (n.left != null && n.right != null)
+				throw new InvalidPositionException("Cannot remove node with two children");
+			Node<E> child = (n.left != null) ? n.left : n.right;
+			if (c.parent == null) {
+				root = child;
+			} else {
+				Node<E> p = own(c.parent);
+				if (p.left == n)
+					p.left = child;
+				else
+					p.right = child;
+				refreshPath(c.parent);
+			}
+			return n.element;
+		}
+
+		// Publica o estado atual como uma versão imutável e encerra o Builder.
+		public PersistentBinaryTree<E> persistent() {
+			checkOpen();
+			edit = null;
+			return new PersistentBinaryTree<E>(root);
+		}
+
+		// Retorna a cópia que substitui n neste Builder, ou o próprio n.
+		Node<E> current(Node<E> n) {
+			Node<E> copy = copies.get(n);
+			return (copy == null) ? n : copy;
+		}
+
+		// Retorna o nodo compartilhado que n substitui, ou o próprio n.
+		Node<E> origin(Node<E> n) {
+			Node<E> original = origins.get(n);
+			return (original == null) ? n : original;
+		}
+
+		// Garante que todos os nodos do caminho até c pertencem a este Builder,
+		// copiando (uma única vez) os que ainda são compartilhados, e retorna o
+		// nodo atual de c.
+		private Node<E> own(Cursor<E> c) {
+			ArrayList<Cursor<E>> path = new ArrayList<Cursor<E>>();
+			for (Cursor<E> p = c; p != null; p = p.parent)
+				path.add(p);
+			Node<E> parent = null;
+			Node<E> n = null;
+			for (int i = path.size() - 1; i >= 0; i--) {
+				n = current(path.get(i).node);
+				if (n.edit != edit) {
+					Node<E> copy = new Node<E>(n.element, n.left, n.right, edit);
+					copies.put(n, copy);
+					origins.put(copy, n);
+					if (parent == null)
+						root = copy;
+					else if (parent.left == n)
+						parent.left = copy;
+					else
+						parent.right = copy;
+					n = copy;
+				}
+				parent = n;
+			}
+			return n;
+		}
+
+		// Recalcula tamanho e hash do nodo de c e de seus ancestrais.
+		private void refreshPath(Cursor<E> c) {
+			for (Cursor<E> p = c; p != null; p = p.parent)
+				current(p.node).refresh();
+		}
+
+		// Converte v para Cursor se ele foi obtido deste Builder e ainda descreve
+		// um caminho válido a partir da raiz atual, caso contrário lança exceção.
+		@SuppressWarnings("unchecked")
+		private Cursor<E> checkPosition(Position<E> v) throws InvalidPositionException {
+			checkOpen();
+			if (v == null || !(v instanceof Cursor))
+				throw new InvalidPositionException("The position is invalid");
+			Cursor<E> c = (Cursor<E>) v;
+			if (c.top != this)
+				throw new InvalidPositionException("The position belongs to another version or builder");
+			Cursor<E> p = c;
+			Node<E> n = current(p.node);
+			while (p.parent != null) {
+				Node<E> parent = current(p.parent.node);
+				if (parent.left != n && parent.right != n)
+					throw new InvalidPositionException("The position is no longer in the tree");
+				p = p.parent;
+				n = parent;
+			}
+			if (n != root)
+				throw new InvalidPositionException("The position is no longer in the tree");
+			return c;
+		}
+
+		private void checkOpen() {
+			if (edit == null)
+				throw new IllegalStateException("Builder already published");
+		}
+	}
+
+}
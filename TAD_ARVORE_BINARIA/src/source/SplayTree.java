@@ -0,0 +1,95 @@
+package source;
+
+import java.util.Comparator;
+import position.Position;
+
+// Árvore de busca auto-ajustável (splay tree) sobre a estrutura encadeada de
+// LinkedBinaryTree. Toda busca, inserção ou remoção termina levando o último
+// nodo visitado até a raiz por rotações (zig, zig-zig e zig-zag), de modo que
+// chaves acessadas com frequência ficam perto da raiz. O custo amortizado de
+// cada operação é O(log n) e, em acessos concentrados em poucas chaves, cai
+// para O(log(1/p)) de uma chave com probabilidade p.
+
+// As chaves são comparadas pela ordem natural ou por um comparador, e cada
+// chave aparece no máximo uma vez. Como as rotações preservam o caminhamento
+// inorder, posições e dados agregados continuam válidos após um acesso.
+
+public class SplayTree<K> extends LinkedBinaryTree<K> {
+
+	private final Comparator<? super K> comparator; // null indica a ordem natural
+
+	// Cria uma árvore vazia que usa a ordem natural das chaves.
+	public SplayTree() {
+		this(null);
+	}
+
+	// Cria uma árvore vazia que usa o comparador.
+	public SplayTree(Comparator<? super K> comparator) {
+		super();
+		this.comparator = comparator;
+	}
+
+	// Procura a chave, levando-a (ou o último nodo visitado) até a raiz.
+	// Retorna a posição da chave, ou null se ela não estiver na árvore.
+	public Position<K> find(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		if (v == null)
+			return null;
+		splay(v);
+		return (compare(key, v.element(), comparator) == 0) ? v : null;
+	}
+
+	// Retorna se a chave está na árvore.
+	public boolean contains(K key) {
+		return (find(key) != null);
+	}
+
+	// Insere a chave e a leva até a raiz. Se ela já estiver na árvore, retorna a
+	// posição existente.
+	public Position<K> insert(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		if (v == null)
+			return addRoot(key);
+		int cmp = compare(key, v.element(), comparator);
+		if (cmp != 0)
+			v = (BTPosition<K>) ((cmp < 0) ? insertLeft(v, key) : insertRight(v, key));
+		splay(v);
+		return v;
+	}
+
+	// Remove a chave, retornando-a (ou null se ela não estiver na árvore). A
+	// chave é levada até a raiz antes de ser removida.
+	public K delete(K key) {
+		Position<K> v = find(key);
+		return (v == null) ? null : remove(v);
+	}
+
+	// Leva x até a raiz. Cada passo recalcula os nodos que rotaciona e os
+	// antigos ancestrais de x passam a ser seus descendentes, então nenhum
+	// dado agregado fica desatualizado.
+	protected void splay(BTPosition<K> x) {
+		while (x.getParent() != null)
+			splayStep(x);
+	}
+
+	// Um passo zig, zig-zig ou zig-zag do splay.
+	private void splayStep(BTPosition<K> x) {
+		BTPosition<K> p = x.getParent();
+		BTPosition<K> g = p.getParent();
+		if (g == null) {
+			rotate(x); // zig
+		} else if ((g.getLeft() == p) == (p.getLeft() == x)) {
+			rotate(p); // zig-zig
+			rotate(x);
+		} else {
+			rotate(x); // zig-zag
+			rotate(x);
+		}
+	}
+
+	// Cria uma árvore vazia com o mesmo comparador
+	protected LinkedBinaryTree<K> newTree() {
+		return new SplayTree<K>(comparator);
+	}
+
+}
@@ -0,0 +1,52 @@
+package source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import position.Position;
+
+// Tabela de consolidação (hash-consing) de subárvores. Cada subárvore registrada
+// é indexada pelo seu tamanho e hash estrutural, de forma que uma subárvore igual
+// a uma já registrada é encontrada sem comparar com todas as outras. O chamador
+// pode então reaproveitar a subárvore canônica em vez de guardar uma cópia.
+
+// As subárvores registradas não devem ser alteradas enquanto estiverem na
+// tabela, assim como as chaves de um HashMap.
+
+public class SubtreeTable<E> {
+
+	private HashMap<Long, ArrayList<BTPosition<E>>> table = new HashMap<Long, ArrayList<BTPosition<E>>>();
+	private int count; // número de subárvores canônicas registradas
+
+	// Retorna a subárvore canônica igual à subárvore de v em T. Se não houver
+	// nenhuma, a subárvore de v é registrada e retornada.
+	public Position<E> intern(LinkedBinaryTree<E> T, Position<E> v) {
+		BTPosition<E> vv = T.checkPosition(v);
+		Long key = key(vv);
+		ArrayList<BTPosition<E>> bucket = table.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<BTPosition<E>>(1);
+			table.put(key, bucket);
+		}
+		for (BTPosition<E> candidate : bucket)
+			if (candidate == vv || LinkedBinaryTree.equalSubtrees(candidate, vv))
+				return candidate;
+		bucket.add(vv);
+		count++;
+		return vv;
+	}
+
+	// Retorna a subárvore canônica igual à árvore T inteira.
+	public Position<E> intern(LinkedBinaryTree<E> T) {
+		return intern(T, T.root());
+	}
+
+	// Retorna o número de subárvores distintas registradas.
+	public int size() {
+		return count;
+	}
+
+	private Long key(BTPosition<E> v) {
+		return ((long) v.getSubtreeSize() << 32) | (v.getSubtreeHash() & 0xFFFFFFFFL);
+	}
+
+}
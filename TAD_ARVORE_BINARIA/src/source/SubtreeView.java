@@ -0,0 +1,149 @@
+package source;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import exceptions.BoundaryViolationException;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Visão da subárvore de um nodo de uma LinkedBinaryTree como uma BinaryTree,
+// sem cópia: as posições da visão são os próprios nodos da árvore, e a visão
+// acompanha as alterações feitas na árvore. replace altera a árvore original.
+
+// O tamanho vem do tamanho guardado no nodo do topo, em O(1). positions e
+// iterator percorrem a subárvore sob demanda, sem montar listas. Cada posição
+// recebida é validada na árvore e depois subindo até o topo da visão, em
+// O(profundidade). Se o topo for removido da árvore, a visão deixa de valer.
+
+public class SubtreeView<E> implements BinaryTree<E> {
+
+	private final LinkedBinaryTree<E> tree;
+	private final BTPosition<E> top; // raiz da visão
+
+	SubtreeView(LinkedBinaryTree<E> tree, BTPosition<E> top) {
+		this.tree = tree;
+		this.top = top;
+	}
+
+	public int size() {
+		return tree.checkPosition(top).getSubtreeSize();
+	}
+
+	public boolean isEmpty() {
+		return false; // a visão tem ao menos o topo
+	}
+
+	public Position<E> root() {
+		return tree.checkPosition(top);
+	}
+
+	public boolean isRoot(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v) == top);
+	}
+
+	public Position<E> parent(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> vv = checkPosition(v);
+		if (vv == top)
+			throw new BoundaryViolationException("No parent");
+		return vv.getParent();
+	}
+
+	public Position<E> left(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return tree.left(checkPosition(v));
+	}
+
+	public Position<E> right(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		return tree.right(checkPosition(v));
+	}
+
+	public boolean hasLeft(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v).getLeft() != null);
+	}
+
+	public boolean hasRight(Position<E> v) throws InvalidPositionException {
+		return (checkPosition(v).getRight() != null);
+	}
+
+	public Iterable<Position<E>> children(Position<E> v) throws InvalidPositionException {
+		return tree.children(checkPosition(v));
+	}
+
+	public boolean isInternal(Position<E> v) throws InvalidPositionException {
+		return !isExternal(v);
+	}
+
+	public boolean isExternal(Position<E> v) throws InvalidPositionException {
+		BTPosition<E> vv = checkPosition(v);
+		return (vv.getLeft() == null && vv.getRight() == null);
+	}
+
+	// Substitui o elemento na árvore original.
+	public E replace(Position<E> v, E e) throws InvalidPositionException {
+		return tree.replace(checkPosition(v), e);
+	}
+
+	// Retorna os nodos da subárvore em ordem prefixada, percorridos sob demanda.
+	public Iterable<Position<E>> positions() {
+		BTPosition<E> start = tree.checkPosition(top);
+		return () -> new Iterator<Position<E>>() {
+			private final Iterator<BTPosition<E>> it = preorder(start);
+			public boolean hasNext() { return it.hasNext(); }
+			public Position<E> next() { return it.next(); }
+		};
+	}
+
+	// Retorna os elementos da subárvore em ordem prefixada, lidos sob demanda.
+	public Iterator<E> iterator() {
+		Iterator<BTPosition<E>> it = preorder(tree.checkPosition(top));
+		return new Iterator<E>() {
+			public boolean hasNext() { return it.hasNext(); }
+			public E next() { return it.next().element(); }
+		};
+	}
+
+	// Retorna uma visão desta subárvore com os elementos transformados por f.
+	public <F> MappedView<E, F> mapView(Function<? super E, ? extends F> f) {
+		return new MappedView<E, F>(tree, top, f);
+	}
+
+	// Valida a posição na árvore e verifica se ela está na subárvore do topo.
+	private BTPosition<E> checkPosition(Position<E> v) throws InvalidPositionException {
+		BTPosition<E> vv = tree.checkPosition(v);
+		if (!contains(top, vv))
+			throw new InvalidPositionException("The position is not in the view");
+		return vv;
+	}
+
+	// Retorna se v está na subárvore de top, subindo a partir de v.
+	static <E> boolean contains(BTPosition<E> top, BTPosition<E> v) {
+		for (BTPosition<E> u = v; u != null; u = u.getParent())
+			if (u == top)
+				return true;
+		return false;
+	}
+
+	// Caminhamento prefixado preguiçoso da subárvore de start.
+	static <E> Iterator<BTPosition<E>> preorder(BTPosition<E> start) {
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		stack.push(start);
+		return new Iterator<BTPosition<E>>() {
+			public boolean hasNext() {
+				return !stack.isEmpty();
+			}
+
+			public BTPosition<E> next() throws NoSuchElementException {
+				if (stack.isEmpty())
+					throw new NoSuchElementException("No next position");
+				BTPosition<E> v = stack.pop();
+				if (v.getRight() != null)
+					stack.push(v.getRight());
+				if (v.getLeft() != null)
+					stack.push(v.getLeft());
+				return v;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,66 @@
+package source;
+
+import java.util.Comparator;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Interface para um resumo (monoide) dos elementos de uma subárvore, guardado
+// em cada nodo de uma SummaryTree.
+
+// O resumo de um nodo é combine(combine(resumo da esquerda, of(elemento)),
+// resumo da direita), com identity() no lugar de um filho ausente. combine
+// deve ser associativa e identity() deve ser neutro; se combine não for
+// comutativa, o resumo segue a ordem inorder.
+
+public interface Summary<E, S> {
+
+	// Resumo de uma subárvore vazia.
+	public S identity();
+
+	// Resumo de um único elemento.
+	public S of(E element);
+
+	// Combina os resumos de duas sequências consecutivas.
+	public S combine(S a, S b);
+
+	// Cria um resumo a partir das três operações.
+	public static <E, S> Summary<E, S> of(S identity, Function<? super E, ? extends S> of, BinaryOperator<S> combine) {
+		return new Summary<E, S>() {
+			public S identity() { return identity; }
+			public S of(E element) { return of.apply(element); }
+			public S combine(S a, S b) { return combine.apply(a, b); }
+		};
+	}
+
+	// Menor elemento pela ordem natural (null para uma subárvore vazia).
+	public static <E extends Comparable<? super E>> Summary<E, E> min() {
+		return min(Comparator.naturalOrder());
+	}
+
+	// Menor elemento pelo comparador (null para uma subárvore vazia).
+	public static <E> Summary<E, E> min(Comparator<? super E> comparator) {
+		return of(null, e -> e, (a, b) -> a == null ? b : b == null ? a : comparator.compare(a, b) <= 0 ? a : b);
+	}
+
+	// Maior elemento pela ordem natural (null para uma subárvore vazia).
+	public static <E extends Comparable<? super E>> Summary<E, E> max() {
+		return max(Comparator.naturalOrder());
+	}
+
+	// Maior elemento pelo comparador (null para uma subárvore vazia).
+	public static <E> Summary<E, E> max(Comparator<? super E> comparator) {
+		return of(null, e -> e, (a, b) -> a == null ? b : b == null ? a : comparator.compare(a, b) >= 0 ? a : b);
+	}
+
+	// Soma dos elementos numéricos.
+	public static <E extends Number> Summary<E, Double> sum() {
+		return of(0.0, e -> e.doubleValue(), Double::sum);
+	}
+
+	// Número de elementos que satisfazem o predicado.
+	public static <E> Summary<E, Integer> count(Predicate<? super E> predicate) {
+		return of(0, e -> predicate.test(e) ? 1 : 0, Integer::sum);
+	}
+
+}
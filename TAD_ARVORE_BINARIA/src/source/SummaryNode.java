@@ -0,0 +1,20 @@
+package source;
+
+// Nodo de árvore binária que guarda o resumo (Summary) da sua subárvore.
+
+public class SummaryNode<E, S> extends BTNode<E> {
+
+	private S summary; // resumo dos elementos da subárvore
+
+	// Construtor principal
+	public SummaryNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+		super(element, parent, left, right);
+	}
+
+	// Retorna o resumo da subárvore
+	public S getSummary() { return summary; }
+
+	// Define o resumo da subárvore
+	public void setSummary(S s) { summary = s; }
+
+}
@@ -0,0 +1,124 @@
+package source;
+
+import java.util.ArrayDeque;
+import java.util.function.Predicate;
+import exceptions.InvalidPositionException;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Árvore binária em que cada nodo (SummaryNode) guarda o resumo da sua
+// subárvore, segundo um Summary (mínimo, máximo, soma, contagem ou outro
+// monoide). O resumo é recalculado em refresh, junto com os demais dados
+// agregados, e por isso se mantém correto após replace, insertLeft,
+// insertRight, remove, attach e lotes, custando O(1) por nodo do caminho.
+
+// As consultas recebem um predicado sobre resumos que diz se uma subárvore pode
+// conter algum elemento procurado; subárvores descartadas por ele não são
+// percorridas. Em uma árvore balanceada o custo é proporcional ao número de
+// nodos encontrados vezes a altura, em vez do tamanho da árvore.
+
+public class SummaryTree<E, S> extends LinkedBinaryTree<E> {
+
+	private final Summary<E, S> summary;
+
+	// Cria uma árvore vazia que resume os elementos com o monoide dado.
+	public SummaryTree(Summary<E, S> summary) {
+		super();
+		if (summary == null)
+			throw new IllegalArgumentException("Resumo nulo");
+		this.summary = summary;
+	}
+
+	// Retorna o monoide usado pela árvore.
+	public Summary<E, S> getSummary() {
+		return summary;
+	}
+
+	// Retorna o resumo da árvore inteira (identity() se estiver vazia).
+	public S summary() {
+		return isEmpty() ? summary.identity() : node(root).getSummary();
+	}
+
+	// Retorna o resumo da subárvore de v.
+	public S summary(Position<E> v) throws InvalidPositionException {
+		return node(checkPosition(v)).getSummary();
+	}
+
+	// Retorna, em ordem prefixada, os nodos cujo elemento satisfaz matches,
+	// descendo apenas nas subárvores cujo resumo satisfaz mayContain.
+	public PositionList<Position<E>> find(Predicate<? super S> mayContain, Predicate<? super E> matches) {
+		PositionList<Position<E>> found = new NodePositionList<Position<E>>();
+		search(mayContain, matches, found);
+		return found;
+	}
+
+	// Retorna se algum elemento satisfaz matches, com a mesma poda de find.
+	public boolean anyMatch(Predicate<? super S> mayContain, Predicate<? super E> matches) {
+		return search(mayContain, matches, null);
+	}
+
+	// Caminhamento prefixado iterativo com poda. Sem lista de saída, para no
+	// primeiro nodo encontrado.
+	private boolean search(Predicate<? super S> mayContain, Predicate<? super E> matches,
+			PositionList<Position<E>> found) {
+		if (isEmpty())
+			return false;
+		boolean any = false;
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			BTPosition<E> u = stack.pop();
+			if (!mayContain.test(node(u).getSummary()))
+				continue;
+			if (matches.test(u.element())) {
+				if (found == null)
+					return true;
+				found.addLast(u);
+				any = true;
+			}
+			if (u.getRight() != null)
+				stack.push(u.getRight());
+			if (u.getLeft() != null)
+				stack.push(u.getLeft());
+		}
+		return any;
+	}
+
+	// Além dos dados agregados, recalcula o resumo a partir dos filhos.
+	protected void refresh(BTPosition<E> v) {
+		super.refresh(v);
+		BTPosition<E> l = v.getLeft();
+		BTPosition<E> r = v.getRight();
+		S s = summary.of(v.element());
+		if (l != null)
+			s = summary.combine(node(l).getSummary(), s);
+		if (r != null)
+			s = summary.combine(s, node(r).getSummary());
+		node(v).setSummary(s);
+	}
+
+	// Só aceita árvores que usam o mesmo monoide, cujos nodos já guardam resumos compatíveis.
+	protected LinkedBinaryTree<E> checkTree(BinaryTree<E> T) throws InvalidPositionException {
+		LinkedBinaryTree<E> t = super.checkTree(T);
+		if (!(t instanceof SummaryTree) || ((SummaryTree<E, ?>) t).summary != summary)
+			throw new InvalidPositionException("The tree does not use the same summary");
+		return t;
+	}
+
+	// Cria um novo nodo com resumo
+	protected BTPosition<E> createNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+		return initNode(new SummaryNode<E, S>(element, parent, left, right));
+	}
+
+	// Cria uma árvore vazia com o mesmo monoide
+	protected LinkedBinaryTree<E> newTree() {
+		return new SummaryTree<E, S>(summary);
+	}
+
+	@SuppressWarnings("unchecked")
+	private SummaryNode<E, S> node(BTPosition<E> v) {
+		return (SummaryNode<E, S>) v;
+	}
+
+}
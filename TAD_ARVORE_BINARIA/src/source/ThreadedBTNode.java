@@ -0,0 +1,54 @@
+package source;
+
+// Nodo de árvore binária costurada (threaded). Quando o nodo não tem filho da
+// esquerda (direita), a referência correspondente guarda uma "costura" para o
+// seu antecessor (sucessor) no caminhamento inorder. As costuras ficam marcadas
+// e getLeft/getRight continuam retornando null nesses casos, de forma que o nodo
+// se comporta como um BTNode comum para o restante da árvore.
+
+public class ThreadedBTNode<E> extends BTNode<E> {
+
+	private boolean leftThread, rightThread; // indicam se left/right são costuras
+
+	// Construtor principal
+	public ThreadedBTNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+		super(element, parent, left, right);
+	}
+
+	// Retorna o filho da esquerda desta posição (null se houver apenas uma costura)
+	public BTPosition<E> getLeft() { return leftThread ? null : super.getLeft(); }
+
+	// Define o filho da esquerda desta posição, apagando a costura
+	public void setLeft(BTPosition<E> v) {
+		super.setLeft(v);
+		leftThread = false;
+	}
+
+	// Retorna o filho da direita desta posição (null se houver apenas uma costura)
+	public BTPosition<E> getRight() { return rightThread ? null : super.getRight(); }
+
+	// Define o filho da direita desta posição, apagando a costura
+	public void setRight(BTPosition<E> v) {
+		super.setRight(v);
+		rightThread = false;
+	}
+
+	// Retorna o antecessor inorder, se a referência da esquerda for uma costura
+	public BTPosition<E> getLeftThread() { return leftThread ? super.getLeft() : null; }
+
+	// Costura a referência da esquerda ao antecessor inorder (null se não houver)
+	public void setLeftThread(BTPosition<E> v) {
+		super.setLeft(v);
+		leftThread = true;
+	}
+
+	// Retorna o sucessor inorder, se a referência da direita for uma costura
+	public BTPosition<E> getRightThread() { return rightThread ? super.getRight() : null; }
+
+	// Costura a referência da direita ao sucessor inorder (null se não houver)
+	public void setRightThread(BTPosition<E> v) {
+		super.setRight(v);
+		rightThread = true;
+	}
+
+}
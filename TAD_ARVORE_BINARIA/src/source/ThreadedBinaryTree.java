@@ -0,0 +1,256 @@
+package source;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import exceptions.BoundaryViolationException;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Árvore binária encadeada cujos nodos são costurados (ThreadedBTNode): as
+// referências vazias de cada nodo apontam para o seu antecessor ou sucessor
+// inorder. As costuras são mantidas pelas operações de atualização, e o
+// caminhamento inorder anda de nodo em nodo sem pilha nem recursão.
+
+public class ThreadedBinaryTree<E> extends LinkedBinaryTree<E> {
+
+	// Cria uma árvore binária costurada vazia.
+	public ThreadedBinaryTree() {
+		super();
+	}
+
+	// Retorna o primeiro nodo do caminhamento inorder.
+	public Position<E> inorderFirst() {
+		return leftmost((BTPosition<E>) root());
+	}
+
+	// Retorna o último nodo do caminhamento inorder.
+	public Position<E> inorderLast() {
+		return rightmost((BTPosition<E>) root());
+	}
+
+	// Retorna o sucessor de um nodo no caminhamento inorder.
+	public Position<E> inorderNext(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> next = successor(thread(checkPosition(v)));
+		if (next == null)
+			throw new BoundaryViolationException("No inorder successor");
+		return next;
+	}
+
+	// Retorna o antecessor de um nodo no caminhamento inorder.
+	public Position<E> inorderPrev(Position<E> v) throws InvalidPositionException, BoundaryViolationException {
+		BTPosition<E> prev = predecessor(thread(checkPosition(v)));
+		if (prev == null)
+			throw new BoundaryViolationException("No inorder predecessor");
+		return prev;
+	}
+
+	// Retorna uma coleção iterável (inorder) dos nodos, percorrida pelas costuras
+	// sob demanda, sem montar uma lista.
+	public Iterable<Position<E>> positionsInorder() {
+		return new Iterable<Position<E>>() {
+			public Iterator<Position<E>> iterator() {
+				return new Iterator<Position<E>>() {
+					private BTPosition<E> cursor = (root == null) ? null : leftmost(root);
+
+					public boolean hasNext() {
+						return (cursor != null);
+					}
+
+					public Position<E> next() throws NoSuchElementException {
+						if (cursor == null)
+							throw new NoSuchElementException("No next position");
+						BTPosition<E> toReturn = cursor;
+						cursor = successor(thread(cursor));
+						return toReturn;
+					}
+				};
+			}
+		};
+	}
+
+	// Insere o filho da esquerda em um nodo, costurando-o entre o antigo
+	// antecessor do nodo e o próprio nodo.
+	public Position<E> insertLeft(Position<E> v, E e) throws InvalidPositionException {
+		ThreadedBTNode<E> vv = thread(checkPosition(v));
+		BTPosition<E> pred = vv.getLeftThread();
+		ThreadedBTNode<E> ww = thread((BTPosition<E>) super.insertLeft(v, e));
+		ww.setLeftThread(pred);
+		ww.setRightThread(vv);
+		return ww;
+	}
+
+	// Insere o filho da direita em um nodo, costurando-o entre o próprio nodo e
+	// o seu antigo sucessor.
+	public Position<E> insertRight(Position<E> v, E e) throws InvalidPositionException {
+		ThreadedBTNode<E> vv = thread(checkPosition(v));
+		BTPosition<E> succ = vv.getRightThread();
+		ThreadedBTNode<E> ww = thread((BTPosition<E>) super.insertRight(v, e));
+		ww.setLeftThread(vv);
+		ww.setRightThread(succ);
+		return ww;
+	}
+
+	// Remove um nodo, refazendo a costura que apontava para ele. Um nodo com dois
+	// filhos é substituído pelo seu sucessor, para o qual passa a apontar a
+	// costura do antecessor; se o sucessor deixou um pai sem filho da esquerda,
+	// esse pai passa a costurar até ele.
+	public E remove(Position<E> v) throws InvalidPositionException {
+		ThreadedBTNode<E> vv = thread(checkPosition(v));
+		BTPosition<E> leftPos = vv.getLeft();
+		BTPosition<E> rightPos = vv.getRight();
+		if (leftPos != null && rightPos != null) {
+			BTPosition<E> ss = leftmost(rightPos);
+			BTPosition<E> sp = ss.getParent();
+			E element = super.remove(v);
+			thread(rightmost(leftPos)).setRightThread(ss);
+			if (sp != vv && sp.getLeft() == null)
+				thread(sp).setLeftThread(ss);
+			return element;
+		}
+		BTPosition<E> pred = vv.getLeftThread();
+		BTPosition<E> succ = vv.getRightThread();
+		BTPosition<E> parent = vv.getParent();
+		boolean isLeftChild = (parent != null && parent.getLeft() == vv);
+		E element = super.remove(v);
+		if (leftPos != null) // o antecessor de v passa a apontar para o sucessor de v
+			thread(rightmost(leftPos)).setRightThread(succ);
+		else if (rightPos != null) // o sucessor de v passa a apontar para o antecessor de v
+			thread(leftmost(rightPos)).setLeftThread(pred);
+		else if (parent != null) { // v era folha: a referência do pai vira costura
+			if (isLeftChild)
+				thread(parent).setLeftThread(pred);
+			else
+				thread(parent).setRightThread(succ);
+		}
+		return element;
+	}
+
+	// Liga as raízes de T1 e T2 como filhos de vv e costura as extremidades das
+	// subárvores. Só os caminhos até o primeiro e o último nodo de cada subárvore
+	// são percorridos.
+	protected int link(BTPosition<E> vv, LinkedBinaryTree<E> t1, LinkedBinaryTree<E> t2) {
+		ThreadedBTNode<E> v = thread(vv);
+		BTPosition<E> pred = v.getLeftThread();
+		BTPosition<E> succ = v.getRightThread();
+		BTPosition<E> r1 = t1.root;
+		BTPosition<E> r2 = t2.root;
+		int moved = super.link(vv, t1, t2);
+		if (r1 != null) {
+			thread(leftmost(r1)).setLeftThread(pred);
+			thread(rightmost(r1)).setRightThread(v);
+		}
+		if (r2 != null) {
+			thread(leftmost(r2)).setLeftThread(v);
+			thread(rightmost(r2)).setRightThread(succ);
+		}
+		return moved;
+	}
+
+	// Separa a subárvore enraizada em ww, desfazendo as costuras que cruzam a divisão.
+	protected LinkedBinaryTree<E> detach(BTPosition<E> parent, BTPosition<E> ww) {
+		ThreadedBTNode<E> first = thread(leftmost(ww));
+		ThreadedBTNode<E> last = thread(rightmost(ww));
+		if (last.getRightThread() == parent) // ww era o filho da esquerda
+			thread(parent).setLeftThread(first.getLeftThread());
+		else
+			thread(parent).setRightThread(last.getRightThread());
+		first.setLeftThread(null);
+		last.setRightThread(null);
+		return super.detach(parent, ww);
+	}
+
+	// Rotação que mantém as costuras: se o pai que desceu ficou sem filho do lado
+	// de x, a referência vazia passa a costurar até x, seu vizinho inorder.
+	protected void rotate(BTPosition<E> x) {
+		BTPosition<E> p = x.getParent();
+		super.rotate(x);
+		if (x.getRight() == p && p.getLeft() == null)
+			thread(p).setLeftThread(x);
+		else if (x.getLeft() == p && p.getRight() == null)
+			thread(p).setRightThread(x);
+	}
+
+	// Aplica o lote sem manter as costuras e depois refaz todas elas em uma
+	// passada inorder, O(n).
+	protected void applyBatch(TreeBatch<E> batch) throws InvalidPositionException {
+		try {
+			super.applyBatch(batch);
+		} finally {
+			rethread();
+		}
+	}
+
+	// Refaz as costuras de todos os nodos a partir das ligações reais.
+	private void rethread() {
+		ArrayDeque<BTPosition<E>> stack = new ArrayDeque<BTPosition<E>>();
+		ThreadedBTNode<E> prev = null;
+		BTPosition<E> v = root;
+		while (v != null || !stack.isEmpty()) {
+			while (v != null) {
+				stack.push(v);
+				v = v.getLeft();
+			}
+			ThreadedBTNode<E> u = thread(stack.pop());
+			if (u.getLeft() == null)
+				u.setLeftThread(prev);
+			if (prev != null && prev.getRight() == null)
+				prev.setRightThread(u);
+			prev = u;
+			v = u.getRight();
+		}
+		if (prev != null && prev.getRight() == null)
+			prev.setRightThread(null);
+	}
+
+	// Só aceita árvores costuradas, cujos nodos já mantêm as costuras.
+	protected LinkedBinaryTree<E> checkTree(BinaryTree<E> T) throws InvalidPositionException {
+		LinkedBinaryTree<E> t = super.checkTree(T);
+		if (!(t instanceof ThreadedBinaryTree))
+			throw new InvalidPositionException("The tree is not threaded");
+		return t;
+	}
+
+	// Cria um novo nodo costurado
+	protected BTPosition<E> createNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+		return initNode(new ThreadedBTNode<E>(element, parent, left, right));
+	}
+
+	// Cria uma árvore costurada vazia
+	protected LinkedBinaryTree<E> newTree() {
+		return new ThreadedBinaryTree<E>();
+	}
+
+	// Retorna o sucessor inorder de um nodo, ou null se ele for o último.
+	private BTPosition<E> successor(ThreadedBTNode<E> v) {
+		if (v.getRight() == null)
+			return v.getRightThread();
+		return leftmost(v.getRight());
+	}
+
+	// Retorna o antecessor inorder de um nodo, ou null se ele for o primeiro.
+	private BTPosition<E> predecessor(ThreadedBTNode<E> v) {
+		if (v.getLeft() == null)
+			return v.getLeftThread();
+		return rightmost(v.getLeft());
+	}
+
+	// Retorna o nodo mais à esquerda da subárvore de v.
+	private BTPosition<E> leftmost(BTPosition<E> v) {
+		while (v.getLeft() != null)
+			v = v.getLeft();
+		return v;
+	}
+
+	// Retorna o nodo mais à direita da subárvore de v.
+	private BTPosition<E> rightmost(BTPosition<E> v) {
+		while (v.getRight() != null)
+			v = v.getRight();
+		return v;
+	}
+
+	private ThreadedBTNode<E> thread(BTPosition<E> v) {
+		return (ThreadedBTNode<E>) v;
+	}
+
+}
@@ -0,0 +1,52 @@
+package source;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+// Fotografia imutável de um caminhamento, guardada em um arranjo. Pode ser
+// percorrida quantas vezes for preciso; forEach e get não alocam memória.
+
+public final class TraversalSnapshot<T> implements Iterable<T> {
+
+	private final Object[] items;
+
+	TraversalSnapshot(Object[] items) {
+		this.items = items;
+	}
+
+	// Retorna o número de itens.
+	public int size() {
+		return items.length;
+	}
+
+	// Retorna o i-ésimo item do caminhamento (a partir de 0).
+	@SuppressWarnings("unchecked")
+	public T get(int i) throws IndexOutOfBoundsException {
+		return (T) items[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<? super T> action) {
+		for (Object item : items)
+			action.accept((T) item);
+	}
+
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return (next < items.length);
+			}
+
+			@SuppressWarnings("unchecked")
+			public T next() throws NoSuchElementException {
+				if (next >= items.length)
+					throw new NoSuchElementException("No next position");
+				return (T) items[next++];
+			}
+		};
+	}
+
+}
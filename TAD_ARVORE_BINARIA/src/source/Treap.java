@@ -0,0 +1,142 @@
+package source;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Treap sobre a estrutura encadeada de LinkedBinaryTree: uma árvore de busca
+// pelas chaves que também é um heap máximo pelas prioridades dos nodos
+// (TreapNode). Cada nodo recebe uma prioridade aleatória ao ser criado, o que
+// dá profundidade esperada O(log n) sem rebalanceamento explícito.
+
+// Para acessos concentrados em poucas chaves, cada busca bem-sucedida sorteia
+// uma nova prioridade para o nodo e fica com a maior das duas (como no treap
+// ponderado de Seidel e Aragon). Uma chave acessada c vezes tem a prioridade
+// do maior de c sorteios e sobe por rotações para perto da raiz, com
+// profundidade esperada O(log(n/c)).
+
+// As chaves são comparadas pela ordem natural ou por um comparador, e cada
+// chave aparece no máximo uma vez.
+
+public class Treap<K> extends LinkedBinaryTree<K> {
+
+	private final Comparator<? super K> comparator; // null indica a ordem natural
+	private final SplittableRandom random;
+
+	// Cria um treap vazio que usa a ordem natural das chaves.
+	public Treap() {
+		this(null);
+	}
+
+	// Cria um treap vazio que usa o comparador.
+	public Treap(Comparator<? super K> comparator) {
+		this(comparator, new SplittableRandom());
+	}
+
+	// Cria um treap vazio com uma semente fixa, para resultados reproduzíveis.
+	public Treap(Comparator<? super K> comparator, long seed) {
+		this(comparator, new SplittableRandom(seed));
+	}
+
+	private Treap(Comparator<? super K> comparator, SplittableRandom random) {
+		super();
+		this.comparator = comparator;
+		this.random = random;
+	}
+
+	// Procura a chave e, se ela estiver na árvore, aumenta a sua prioridade.
+	// Retorna a posição da chave, ou null.
+	public Position<K> find(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		if (v == null || compare(key, v.element(), comparator) != 0)
+			return null;
+		int p = random.nextInt();
+		if (p > node(v).getPriority()) {
+			node(v).setPriority(p);
+			siftUp(v);
+		}
+		return v;
+	}
+
+	// Retorna se a chave está na árvore, sem alterar prioridades.
+	public boolean contains(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		return (v != null && compare(key, v.element(), comparator) == 0);
+	}
+
+	// Retorna a prioridade de um nodo.
+	public int priority(Position<K> v) throws InvalidPositionException {
+		return node(checkPosition(v)).getPriority();
+	}
+
+	// Insere a chave. Se ela já estiver na árvore, retorna a posição existente.
+	public Position<K> insert(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		if (v == null)
+			return addRoot(key);
+		int cmp = compare(key, v.element(), comparator);
+		if (cmp == 0)
+			return v;
+		BTPosition<K> w = (BTPosition<K>) ((cmp < 0) ? insertLeft(v, key) : insertRight(v, key));
+		siftUp(w);
+		return w;
+	}
+
+	// Remove a chave, retornando-a (ou null se ela não estiver na árvore).
+	public K delete(K key) {
+		BTPosition<K> v = lookup(key, comparator);
+		if (v == null || compare(key, v.element(), comparator) != 0)
+			return null;
+		return remove(v);
+	}
+
+	// Remove um nodo. Para preservar o heap, um nodo com dois filhos desce por
+	// rotações com o filho de maior prioridade até ficar com no máximo um filho,
+	// em vez de ser trocado pelo sucessor.
+	public K remove(Position<K> v) throws InvalidPositionException {
+		BTPosition<K> vv = checkPosition(v);
+		while (vv.getLeft() != null && vv.getRight() != null) {
+			BTPosition<K> l = vv.getLeft(), r = vv.getRight();
+			rotate(node(l).getPriority() > node(r).getPriority() ? l : r);
+		}
+		return super.remove(vv); // recalcula o caminho inteiro até a raiz
+	}
+
+	// Sobe v por rotações enquanto a sua prioridade for maior que a do pai e
+	// depois recalcula os ancestrais restantes.
+	private void siftUp(BTPosition<K> v) {
+		BTPosition<K> p = v.getParent();
+		while (p != null && node(p).getPriority() < node(v).getPriority()) {
+			rotate(v);
+			p = v.getParent();
+		}
+		if (p != null)
+			updatePath(p);
+	}
+
+	// Cria um novo nodo com prioridade aleatória
+	protected BTPosition<K> createNode(K element, BTPosition<K> parent, BTPosition<K> left, BTPosition<K> right) {
+		TreapNode<K> node = new TreapNode<K>(element, parent, left, right);
+		node.setPriority(random.nextInt());
+		return initNode(node);
+	}
+
+	// Só aceita treaps, cujos nodos guardam prioridades.
+	protected LinkedBinaryTree<K> checkTree(BinaryTree<K> T) throws InvalidPositionException {
+		LinkedBinaryTree<K> t = super.checkTree(T);
+		if (!(t instanceof Treap))
+			throw new InvalidPositionException("The tree is not a treap");
+		return t;
+	}
+
+	// Cria um treap vazio com o mesmo comparador
+	protected LinkedBinaryTree<K> newTree() {
+		return new Treap<K>(comparator, random.split());
+	}
+
+	private TreapNode<K> node(BTPosition<K> v) {
+		return (TreapNode<K>) v;
+	}
+
+}
@@ -0,0 +1,21 @@
+package source;
+
+// Nodo de treap, que além da chave guarda uma prioridade. As prioridades
+// formam um heap máximo: nenhum nodo tem prioridade maior que a do seu pai.
+
+public class TreapNode<E> extends BTNode<E> {
+
+	private int priority; // prioridade do nodo no heap
+
+	// Construtor principal
+	public TreapNode(E element, BTPosition<E> parent, BTPosition<E> left, BTPosition<E> right) {
+		super(element, parent, left, right);
+	}
+
+	// Retorna a prioridade do nodo
+	public int getPriority() { return priority; }
+
+	// Define a prioridade do nodo
+	public void setPriority(int p) { priority = p; }
+
+}
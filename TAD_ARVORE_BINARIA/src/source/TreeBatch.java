@@ -0,0 +1,93 @@
+package source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import exceptions.InvalidPositionException;
+import position.Position;
+
+// Lote de alterações sobre uma LinkedBinaryTree, aplicadas de uma só vez.
+
+// As operações são apenas registradas até apply(). Os nodos inseridos pelo
+// lote são criados no registro e já podem ser usados como alvo de operações
+// seguintes do mesmo lote, mas só passam a valer na árvore depois de apply().
+// Na aplicação cada posição é validada uma única vez, o tamanho e o número de
+// alterações da árvore mudam uma vez, e os dados agregados (tamanho e hash das
+// subárvores) são recalculados em uma única passada de baixo para cima que
+// visita cada nodo afetado uma só vez.
+
+// As operações são aplicadas na ordem em que foram registradas. O lote inteiro
+// é validado antes da primeira alteração: se alguma operação for inválida, a
+// exceção é repassada e a árvore não muda.
+
+public class TreeBatch<E> {
+
+	// Tipos de operação
+	static final int INSERT_LEFT = 0, INSERT_RIGHT = 1, REPLACE = 2, REMOVE = 3;
+
+	private final LinkedBinaryTree<E> tree;
+	int[] kinds = new int[16]; // tipo de cada operação, sem embrulhar em Integer
+	private int count; // operações registradas
+	final ArrayList<Position<E>> targets = new ArrayList<Position<E>>();
+	final ArrayList<Object> args = new ArrayList<Object>(); // elemento ou nodo criado
+	private boolean applied;
+
+	TreeBatch(LinkedBinaryTree<E> tree) {
+		this.tree = tree;
+	}
+
+	// Registra a inserção do filho da esquerda de v, retornando o novo nodo.
+	public Position<E> insertLeft(Position<E> v, E e) {
+		return record(INSERT_LEFT, v, e);
+	}
+
+	// Registra a inserção do filho da direita de v, retornando o novo nodo.
+	public Position<E> insertRight(Position<E> v, E e) {
+		return record(INSERT_RIGHT, v, e);
+	}
+
+	// Registra a troca do elemento de v.
+	public void replace(Position<E> v, E e) {
+		checkOpen();
+		add(REPLACE, v, e);
+	}
+
+	// Registra a remoção de v, que deve ter zero ou um filho quando for removido.
+	public void remove(Position<E> v) {
+		checkOpen();
+		add(REMOVE, v, null);
+	}
+
+	// Retorna o número de operações registradas.
+	public int size() {
+		return count;
+	}
+
+	// Aplica as operações na árvore. Um lote só pode ser aplicado uma vez.
+	public void apply() throws InvalidPositionException {
+		checkOpen();
+		applied = true;
+		tree.applyBatch(this);
+	}
+
+	private Position<E> record(int kind, Position<E> v, E e) {
+		checkOpen();
+		BTPosition<E> node = tree.createNode(e, null, null, null);
+		node.setOwner(null); // ainda não pertence à árvore
+		add(kind, v, node);
+		return node;
+	}
+
+	private void add(int kind, Position<E> v, Object arg) {
+		if (count == kinds.length)
+			kinds = Arrays.copyOf(kinds, count * 2);
+		kinds[count++] = kind;
+		targets.add(v);
+		args.add(arg);
+	}
+
+	private void checkOpen() {
+		if (applied)
+			throw new IllegalStateException("The batch was already applied");
+	}
+
+}
@@ -0,0 +1,144 @@
+package source;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Construção de uma LinkedBinaryTree a partir de uma sequência de eventos
+// (open, leaf, skip, close), no estilo SAX: a árvore chega em pré-ordem e cada
+// evento é consumido assim que é recebido, sem precisar da sequência inteira.
+
+// open(e) abre um nodo com o elemento e como o próximo filho do nodo aberto
+// (primeiro o da esquerda, depois o da direita); close() fecha o nodo aberto;
+// leaf(e) equivale a open(e) seguido de close(); skip() deixa vazia a próxima
+// posição de filho, para nodos que só têm o filho da direita.
+
+// O construtor guarda apenas o caminho da raiz até o nodo aberto. Os dados
+// agregados (tamanho e hash das subárvores) de cada nodo são calculados uma vez,
+// quando ele é fechado. Com um destino (sink), cada subárvore cuja raiz está na
+// profundidade flushDepth é entregue ao destino como uma árvore independente
+// assim que é fechada e não é mantida: a memória usada fica limitada ao caminho
+// atual, aos níveis acima de flushDepth e a uma subárvore de cada vez.
+
+public class TreeBuilder<E> {
+
+	private final LinkedBinaryTree<E> tree = new LinkedBinaryTree<E>();
+	private final int flushDepth;
+	private final Consumer<? super LinkedBinaryTree<E>> sink; // null mantém tudo em tree
+
+	// Caminho da raiz até o nodo aberto
+	private BTPosition<E>[] path;
+	private LinkedBinaryTree<E>[] owners; // árvore a que cada nodo do caminho pertence
+	private int[] children; // posições de filho já usadas por cada nodo do caminho
+	private int top;
+	private boolean rootClosed, built;
+
+	// Cria um construtor que mantém a árvore inteira.
+	public TreeBuilder() {
+		this(0, null);
+	}
+
+	// Cria um construtor que entrega ao destino cada subárvore fechada cuja raiz
+	// está na profundidade flushDepth (0 entrega a árvore inteira).
+	@SuppressWarnings("unchecked")
+	public TreeBuilder(int flushDepth, Consumer<? super LinkedBinaryTree<E>> sink) {
+		if (flushDepth < 0)
+			throw new IllegalArgumentException("Profundidade negativa: " + flushDepth);
+		this.flushDepth = flushDepth;
+		this.sink = sink;
+		path = (BTPosition<E>[]) new BTPosition<?>[16];
+		owners = (LinkedBinaryTree<E>[]) new LinkedBinaryTree<?>[16];
+		children = new int[16];
+	}
+
+	// Abre um nodo com o elemento e.
+	public TreeBuilder<E> open(E e) {
+		checkOpen();
+		BTPosition<E> parent = null;
+		if (top == 0) {
+			if (rootClosed)
+				throw new IllegalStateException("A árvore já tem raiz");
+		} else {
+			parent = path[top - 1];
+			if (children[top - 1] == 2)
+				throw new IllegalStateException("O nodo " + parent.element() + " já tem dois filhos");
+		}
+		boolean flush = (sink != null && top == flushDepth);
+		LinkedBinaryTree<E> owner = flush ? new LinkedBinaryTree<E>() : (top == 0) ? tree : owners[top - 1];
+		BTPosition<E> node = owner.createNode(e, flush ? null : parent, null, null);
+		if (flush || parent == null)
+			owner.root = node;
+		else if (children[top - 1] == 0)
+			parent.setLeft(node);
+		else
+			parent.setRight(node);
+		owner.size++;
+		if (parent != null)
+			children[top - 1]++;
+		if (top == path.length) {
+			path = Arrays.copyOf(path, top * 2);
+			owners = Arrays.copyOf(owners, top * 2);
+			children = Arrays.copyOf(children, top * 2);
+		}
+		path[top] = node;
+		owners[top] = owner;
+		children[top] = 0;
+		top++;
+		return this;
+	}
+
+	// Insere um nodo externo com o elemento e.
+	public TreeBuilder<E> leaf(E e) {
+		return open(e).close();
+	}
+
+	// Deixa vazia a próxima posição de filho do nodo aberto.
+	public TreeBuilder<E> skip() {
+		checkOpen();
+		if (top == 0)
+			throw new IllegalStateException("Nenhum nodo aberto");
+		if (children[top - 1] == 2)
+			throw new IllegalStateException("O nodo " + path[top - 1].element() + " já tem dois filhos");
+		children[top - 1]++;
+		return this;
+	}
+
+	// Fecha o nodo aberto.
+	public TreeBuilder<E> close() {
+		checkOpen();
+		if (top == 0)
+			throw new IllegalStateException("Nenhum nodo aberto");
+		top--;
+		BTPosition<E> node = path[top];
+		LinkedBinaryTree<E> owner = owners[top];
+		path[top] = null; // não retém nodos já fechados
+		owners[top] = null;
+		owner.refresh(node); // os filhos já foram fechados
+		if (top == 0)
+			rootClosed = true;
+		if (owner != tree && owner.root == node)
+			sink.accept(owner);
+		return this;
+	}
+
+	// Retorna a profundidade do nodo aberto mais um (0 se nenhum estiver aberto).
+	public int depth() {
+		return top;
+	}
+
+	// Retorna a árvore construída. Todos os nodos abertos devem ter sido fechados;
+	// depois disso o construtor não aceita mais eventos. Com um destino, a árvore
+	// retornada contém apenas os níveis acima de flushDepth.
+	public LinkedBinaryTree<E> build() {
+		checkOpen();
+		if (top > 0)
+			throw new IllegalStateException(top + " nodo(s) ainda aberto(s)");
+		built = true;
+		return tree;
+	}
+
+	private void checkOpen() {
+		if (built)
+			throw new IllegalStateException("A árvore já foi construída");
+	}
+
+}
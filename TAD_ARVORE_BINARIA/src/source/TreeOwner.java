@@ -0,0 +1,36 @@
+package source;
+
+// Identifica a árvore (ou família de árvores) a que um nodo pertence.
+
+// Os nodos guardam uma referência para o TreeOwner da árvore em vez da própria
+// árvore. Quando uma árvore é conectada a outra (attach), o seu TreeOwner passa
+// a encaminhar para o da árvore destino, de forma que os nodos movidos mudam de
+// dona em O(1), sem que a subárvore seja percorrida.
+
+public final class TreeOwner {
+
+	private TreeOwner forward; // família para a qual esta foi encaminhada
+
+	// Retorna o representante desta família, comprimindo o caminho percorrido.
+	TreeOwner resolve() {
+		TreeOwner rep = this;
+		while (rep.forward != null)
+			rep = rep.forward;
+		TreeOwner o = this;
+		while (o != rep) { // compressão de caminho
+			TreeOwner next = o.forward;
+			o.forward = rep;
+			o = next;
+		}
+		return rep;
+	}
+
+	// Une esta família à família de destino.
+	void forwardTo(TreeOwner target) {
+		TreeOwner from = resolve();
+		TreeOwner to = target.resolve();
+		if (from != to)
+			from.forward = to;
+	}
+
+}
@@ -0,0 +1,288 @@
+package source;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import memoria.Footprint;
+import position.Position;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
+
+// Cópia somente-leitura de uma árvore binária de busca em arranjos contíguos,
+// com os nodos na ordem de van Emde Boas: a árvore é cortada na metade da
+// altura, a parte de cima é gravada primeiro e depois cada subárvore de baixo,
+// recursivamente. Assim qualquer caminho da raiz até uma folha atravessa
+// O(log_B n) blocos de cache, seja qual for o tamanho B do bloco.
+
+// Os filhos são guardados como índices em arranjos de int. Se as chaves forem
+// todas Integer e a ordem for a natural, elas também são copiadas para um int[],
+// para que a busca não precise seguir referências para objetos no heap.
+
+// A ordem por nível (LEVEL) também é oferecida, para comparação.
+
+public class VanEmdeBoasLayout<K> {
+
+	// Ordem em que os nodos são gravados nos arranjos
+	public enum Order { VAN_EMDE_BOAS, LEVEL }
+
+	private final Comparator<? super K> comparator; // null indica a ordem natural
+	private final Object[] keys;
+	private final int[] intKeys; // cópia primitiva das chaves, ou null
+	private final int[] left, right; // índice dos filhos (-1 se não houver)
+	private int count; // nodos já gravados durante a construção
+
+	// Copia a árvore de busca T na ordem de van Emde Boas, usando a ordem natural das chaves.
+	public VanEmdeBoasLayout(BinaryTree<K> T) {
+		this(T, null, Order.VAN_EMDE_BOAS);
+	}
+
+	// Copia a árvore de busca T na ordem dada, comparando as chaves com o comparador
+	// (null para a ordem natural).
+	@SuppressWarnings("unchecked")
+	public VanEmdeBoasLayout(BinaryTree<K> T, Comparator<? super K> comparator, Order order) {
+		this.comparator = comparator;
+		int n = T.size();
+		keys = new Object[n];
+		left = new int[n];
+		right = new int[n];
+		Position<K>[] nodes = (Position<K>[]) new Position<?>[n];
+		if (n > 0) {
+			int height = levelOrder(T, nodes);
+			if (order == Order.LEVEL)
+				count = n;
+			else // a ordem por nível serviu só para medir a altura
+				layout(T, T.root(), height, nodes);
+		}
+		HashMap<Position<K>, Integer> index = new HashMap<Position<K>, Integer>(2 * n);
+		for (int i = 0; i < n; i++)
+			index.put(nodes[i], i);
+		boolean allInts = (comparator == null);
+		for (int i = 0; i < n; i++) {
+			Position<K> v = nodes[i];
+			keys[i] = v.element();
+			allInts &= (keys[i] instanceof Integer);
+			left[i] = T.hasLeft(v) ? index.get(T.left(v)) : -1;
+			right[i] = T.hasRight(v) ? index.get(T.right(v)) : -1;
+		}
+		if (allInts && n > 0) {
+			intKeys = new int[n];
+			for (int i = 0; i < n; i++)
+				intKeys[i] = (Integer) keys[i];
+		} else {
+			intKeys = null;
+		}
+	}
+
+	// Retorna o número de chaves.
+	public int size() {
+		return keys.length;
+	}
+
+	// Retorna uma estimativa do espaço ocupado: os arranjos como estrutura e as
+	// chaves à parte.
+	public Footprint footprint() {
+		Footprint f = new Footprint().addStructure(this).addStructure(keys).addStructure(intKeys)
+				.addStructure(left).addStructure(right);
+		for (Object key : keys)
+			f.addElement(key);
+		return f;
+	}
+
+	// Retorna se a chave está na árvore.
+	public boolean contains(K key) {
+		return (find(key) >= 0);
+	}
+
+	// Retorna a chave armazenada igual à dada (ou null se não houver).
+	@SuppressWarnings("unchecked")
+	public K get(K key) {
+		int i = find(key);
+		return (i < 0) ? null : (K) keys[i];
+	}
+
+	// Retorna quantas chaves estão no intervalo [lo, hi].
+	public int countInRange(K lo, K hi) {
+		int[] total = new int[1];
+		scanRange(lo, hi, null, total);
+		return total[0];
+	}
+
+	// Retorna as chaves do intervalo [lo, hi], em ordem crescente.
+	public PositionList<K> range(K lo, K hi) {
+		PositionList<K> out = new NodePositionList<K>();
+		scanRange(lo, hi, out, new int[1]);
+		return out;
+	}
+
+	// Retorna o índice da chave nos arranjos, ou -1.
+	private int find(K key) {
+		if (keys.length == 0)
+			return -1;
+		if (intKeys != null && key instanceof Integer) {
+			int k = (Integer) key;
+			int i = 0;
+			while (i >= 0) {
+				int x = intKeys[i];
+				if (k == x)
+					return i;
+				i = (k < x) ? left[i] : right[i];
+			}
+			return -1;
+		}
+		int i = 0;
+		while (i >= 0) {
+			int c = compare(key, keys[i]);
+			if (c == 0)
+				return i;
+			i = (c < 0) ? left[i] : right[i];
+		}
+		return -1;
+	}
+
+	// Caminhamento inorder iterativo que só desce nas subárvores que podem
+	// conter chaves do intervalo.
+	@SuppressWarnings("unchecked")
+	private void scanRange(K lo, K hi, PositionList<K> out, int[] total) {
+		if (keys.length == 0 || compare(lo, hi) > 0)
+			return;
+		if (intKeys != null && lo instanceof Integer && hi instanceof Integer) {
+			scanIntRange((Integer) lo, (Integer) hi, out, total);
+			return;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		int i = 0;
+		while (i >= 0 || top > 0) {
+			while (i >= 0) {
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				if (compare(lo, keys[i]) <= 0) { // a subárvore da esquerda pode ter chaves do intervalo
+					stack[top++] = i;
+					i = left[i];
+				} else {
+					i = right[i];
+				}
+			}
+			if (top == 0)
+				break;
+			i = stack[--top];
+			if (compare(hi, keys[i]) < 0)
+				return; // todas as chaves seguintes são maiores que hi
+			total[0]++;
+			if (out != null)
+				out.addLast((K) keys[i]);
+			i = right[i];
+		}
+	}
+
+	// Mesmo caminhamento de scanRange sobre a cópia primitiva das chaves, como em find.
+	@SuppressWarnings("unchecked")
+	private void scanIntRange(int lo, int hi, PositionList<K> out, int[] total) {
+		int[] stack = new int[64];
+		int top = 0;
+		int i = 0;
+		while (i >= 0 || top > 0) {
+			while (i >= 0) {
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				if (lo <= intKeys[i]) {
+					stack[top++] = i;
+					i = left[i];
+				} else {
+					i = right[i];
+				}
+			}
+			if (top == 0)
+				break;
+			i = stack[--top];
+			if (hi < intKeys[i])
+				return;
+			total[0]++;
+			if (out != null)
+				out.addLast((K) keys[i]);
+			i = right[i];
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(Object a, Object b) {
+		if (comparator != null)
+			return comparator.compare((K) a, (K) b);
+		return ((Comparable<Object>) a).compareTo(b);
+	}
+
+	// Grava os h níveis de cima da subárvore de v na ordem de van Emde Boas. A
+	// recursão é simulada com uma pilha de tarefas (nodo, altura): ao expandir
+	// uma tarefa, a parte de cima é empilhada por último para ser gravada
+	// primeiro, seguida das subárvores de baixo da esquerda para a direita.
+	private void layout(BinaryTree<K> T, Position<K> v, int h, Position<K>[] nodes) {
+		ArrayDeque<Position<K>> pending = new ArrayDeque<Position<K>>();
+		ArrayDeque<Integer> heights = new ArrayDeque<Integer>();
+		pending.push(v);
+		heights.push(h);
+		while (!pending.isEmpty()) {
+			Position<K> u = pending.pop();
+			int hu = heights.pop();
+			if (hu == 1) {
+				nodes[count++] = u;
+				continue;
+			}
+			int top = hu / 2;
+			ArrayList<Position<K>> bottom = descendantsAt(T, u, top);
+			for (int i = bottom.size() - 1; i >= 0; i--) { // cada subárvore de baixo
+				pending.push(bottom.get(i));
+				heights.push(hu - top);
+			}
+			pending.push(u); // parte de cima
+			heights.push(top);
+		}
+	}
+
+	// Retorna os descendentes de v na profundidade relativa d, da esquerda para
+	// a direita, com uma pilha explícita em vez de recursão.
+	private ArrayList<Position<K>> descendantsAt(BinaryTree<K> T, Position<K> v, int d) {
+		ArrayList<Position<K>> found = new ArrayList<Position<K>>();
+		ArrayDeque<Position<K>> stack = new ArrayDeque<Position<K>>();
+		ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+		stack.push(v);
+		depths.push(0);
+		while (!stack.isEmpty()) {
+			Position<K> u = stack.pop();
+			int du = depths.pop();
+			if (du == d) {
+				found.add(u);
+				continue;
+			}
+			if (T.hasRight(u)) { // a direita é empilhada antes para sair depois
+				stack.push(T.right(u));
+				depths.push(du + 1);
+			}
+			if (T.hasLeft(u)) {
+				stack.push(T.left(u));
+				depths.push(du + 1);
+			}
+		}
+		return found;
+	}
+
+	// Grava os nodos de T em nodes na ordem por nível, usando o próprio arranjo
+	// como fila, e retorna o número de níveis da árvore.
+	private int levelOrder(BinaryTree<K> T, Position<K>[] nodes) {
+		int head = 0, tail = 0, levels = 0;
+		nodes[tail++] = T.root();
+		while (head < tail) {
+			for (int end = tail; head < end; head++) { // um nível
+				Position<K> v = nodes[head];
+				if (T.hasLeft(v))
+					nodes[tail++] = T.left(v);
+				if (T.hasRight(v))
+					nodes[tail++] = T.right(v);
+			}
+			levels++;
+		}
+		return levels;
+	}
+
+}
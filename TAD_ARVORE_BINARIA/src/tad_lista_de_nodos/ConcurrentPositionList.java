@@ -0,0 +1,243 @@
+package tad_lista_de_nodos;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+// Lista de posições segura para várias threads, sem travas (lista de Harris e
+// Michael). A lista é simplesmente encadeada a partir de uma cabeça sentinela;
+// cada referência para o próximo nodo carrega uma marca que indica que o
+// próprio nodo foi removido. Remover é marcar (a remoção lógica decide qual
+// thread fica com o elemento) e depois desligar o nodo, o que qualquer thread
+// que passe por ele ajuda a fazer.
+
+// Inserir no início ou depois de uma posição e remover uma posição próxima do
+// início custam O(1). Como não há ligação para o anterior, prev, addBefore e
+// last percorrem a lista desde o início. size e o iterador são fracamente
+// consistentes: o iterador nunca lança ConcurrentModificationException e vê
+// os elementos presentes durante a iteração.
+
+public class ConcurrentPositionList<E> implements PositionList<E> {
+
+	// Nodo da lista
+	protected static class CNode<E> implements Position<E> {
+		private final ConcurrentPositionList<E> list; // lista dona do nodo
+		private volatile E element;
+		private final AtomicMarkableReference<CNode<E>> next;
+
+		CNode(ConcurrentPositionList<E> list, E element, CNode<E> next) {
+			this.list = list;
+			this.element = element;
+			this.next = new AtomicMarkableReference<CNode<E>>(next, false);
+		}
+
+		public E element() { return element; }
+
+		boolean isRemoved() { return next.isMarked(); }
+	}
+
+	protected final CNode<E> head; // sentinela
+	protected volatile CNode<E> tail; // dica de onde fica o fim da lista
+	protected final AtomicInteger numElts = new AtomicInteger();
+
+	// Construtor que cria uma lista vazia
+	public ConcurrentPositionList() {
+		head = new CNode<E>(this, null, null);
+		tail = head;
+	}
+
+	public int size() {
+		return numElts.get();
+	}
+
+	public boolean isEmpty() {
+		return (firstLive(head) == null);
+	}
+
+	public Position<E> first() throws EmptyListException {
+		CNode<E> v = firstLive(head);
+		if (v == null)
+			throw new EmptyListException("List is empty");
+		return v;
+	}
+
+	public Position<E> last() throws EmptyListException {
+		CNode<E> last = null;
+		for (CNode<E> v = firstLive(head); v != null; v = firstLive(v))
+			last = v;
+		if (last == null)
+			throw new EmptyListException("List is empty");
+		return last;
+	}
+
+	public Position<E> next(Position<E> p) throws InvalidPositionException, BoundaryViolationException {
+		CNode<E> v = firstLive(checkPosition(p));
+		if (v == null)
+			throw new BoundaryViolationException("Cannot advance past the end of the list");
+		return v;
+	}
+
+	public Position<E> prev(Position<E> p) throws InvalidPositionException, BoundaryViolationException {
+		CNode<E> v = checkPosition(p);
+		CNode<E> pred = predecessor(v);
+		if (pred == null)
+			throw new InvalidPositionException("Position is not in the list");
+		if (pred == head)
+			throw new BoundaryViolationException("Cannot advance past the beginning of the list");
+		return pred;
+	}
+
+	public void addFirst(E e) {
+		insertAfter(head, e);
+	}
+
+	// Insere no fim, partindo da dica de fim; se ela já foi removida, parte do início.
+	public void addLast(E e) {
+		CNode<E> w = new CNode<E>(this, e, null);
+		while (true) {
+			CNode<E> v = tail;
+			if (v.isRemoved())
+				v = head;
+			for (CNode<E> n = v.next.getReference(); n != null; n = v.next.getReference())
+				v = n;
+			if (v.next.compareAndSet(null, w, false, false)) {
+				tail = w;
+				numElts.incrementAndGet();
+				return;
+			}
+			if (v.isRemoved())
+				unlink(v); // o último nodo foi removido: desliga-o antes de tentar de novo
+		}
+	}
+
+	public void addAfter(Position<E> p, E e) throws InvalidPositionException {
+		insertAfter(checkPosition(p), e);
+	}
+
+	public void addBefore(Position<E> p, E e) throws InvalidPositionException {
+		CNode<E> v = checkPosition(p);
+		while (true) {
+			CNode<E> pred = predecessor(v);
+			if (pred == null)
+				throw new InvalidPositionException("Position is not in the list");
+			CNode<E> w = new CNode<E>(this, e, v);
+			if (pred.next.compareAndSet(v, w, false, false)) {
+				numElts.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	// Remove a posição. Se várias threads tentarem remover a mesma posição, só
+	// uma recebe o elemento; as demais recebem InvalidPositionException.
+	public E remove(Position<E> p) throws InvalidPositionException {
+		CNode<E> v = checkPosition(p);
+		while (true) {
+			CNode<E> succ = v.next.getReference();
+			if (v.isRemoved())
+				throw new InvalidPositionException("Position was already removed");
+			if (v.next.compareAndSet(succ, succ, false, true))
+				break;
+		}
+		numElts.decrementAndGet();
+		unlink(v);
+		return v.element;
+	}
+
+	public E set(Position<E> p, E e) throws InvalidPositionException {
+		CNode<E> v = checkPosition(p);
+		if (v.isRemoved())
+			throw new InvalidPositionException("Position was removed");
+		E old = v.element;
+		v.element = e;
+		return old;
+	}
+
+	// Retorna um iterador fracamente consistente sobre os elementos.
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private CNode<E> cursor = firstLive(head);
+
+			public boolean hasNext() {
+				return (cursor != null);
+			}
+
+			public E next() throws NoSuchElementException {
+				if (cursor == null)
+					throw new NoSuchElementException("No next element");
+				E toReturn = cursor.element;
+				cursor = firstLive(cursor);
+				return toReturn;
+			}
+		};
+	}
+
+	public String toString() {
+		return NodePositionList.toString(this);
+	}
+
+	// Métodos auxiliares
+
+	private void insertAfter(CNode<E> v, E e) {
+		while (true) {
+			CNode<E> succ = v.next.getReference();
+			if (v.isRemoved())
+				throw new InvalidPositionException("Position was removed");
+			CNode<E> w = new CNode<E>(this, e, succ);
+			if (v.next.compareAndSet(succ, w, false, false)) {
+				if (succ == null)
+					tail = w;
+				numElts.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	// Retorna o primeiro nodo não removido depois de v, ou null.
+	private CNode<E> firstLive(CNode<E> v) {
+		CNode<E> n = v.next.getReference();
+		while (n != null && n.isRemoved())
+			n = n.next.getReference();
+		return n;
+	}
+
+	// Retorna o nodo não removido cuja referência aponta para v (a cabeça, se v
+	// for o primeiro), desligando no caminho os nodos removidos. Retorna null se
+	// v não estiver mais na lista.
+	private CNode<E> predecessor(CNode<E> v) {
+		retry: while (true) {
+			CNode<E> pred = head;
+			CNode<E> curr = pred.next.getReference();
+			while (curr != null) {
+				boolean[] removed = { false };
+				CNode<E> succ = curr.next.get(removed);
+				if (removed[0]) {
+					if (!pred.next.compareAndSet(curr, succ, false, false))
+						continue retry; // pred mudou: recomeça
+					curr = succ;
+					continue;
+				}
+				if (curr == v)
+					return pred;
+				pred = curr;
+				curr = succ;
+			}
+			return null;
+		}
+	}
+
+	// Desliga fisicamente um nodo já marcado como removido.
+	private void unlink(CNode<E> v) {
+		predecessor(v);
+	}
+
+	// Verifica se a posição é um nodo desta lista (a cabeça não é válida).
+	@SuppressWarnings("unchecked")
+	protected CNode<E> checkPosition(Position<E> p) throws InvalidPositionException {
+		if (!(p instanceof CNode) || ((CNode<E>) p).list != this || p == head)
+			throw new InvalidPositionException("The position is invalid");
+		return (CNode<E>) p;
+	}
+
+}
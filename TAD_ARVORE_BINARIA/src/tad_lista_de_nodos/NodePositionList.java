@@ -1,6 +1,7 @@
 package tad_lista_de_nodos;
 
 import java.util.Iterator;
+import memoria.Footprint;
 
 public class NodePositionList<E> implements PositionList<E> {
 	
@@ -211,6 +212,20 @@ public class NodePositionList<E> implements PositionList<E> {
 	
 	}
 	
+	// Retorna uma estimativa do espaço ocupado pela lista, com as sentinelas
+	
+	public Footprint footprint() {
+	
+	Footprint f = new Footprint().addStructure(this).addStructure(header);
+	
+	for (DNode<E> v = header.getNext(); v != trailer; v = v.getNext())
+	
+	f.addStructure(v).addElement(v.element());
+	
+	return f.addStructure(trailer);
+	
+	}
+	
 	// Retorna a representação textual de uma lista de nodos
 	
 	public static <E> String toString(PositionList<E> l) {
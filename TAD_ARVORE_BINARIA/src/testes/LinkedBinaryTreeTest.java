@@ -9,9 +9,19 @@ import static org.junit.jupiter.api.Assertions.fail;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,8 +29,34 @@ import org.junit.jupiter.api.Test;
 import exceptions.BoundaryViolationException;
 import exceptions.InvalidPositionException;
 import exceptions.NonEmptyTreeException;
+import memoria.Footprint;
+import pilha.ConcurrentNodeStack;
 import position.Position;
+import source.AsyncEvaluator;
+import source.BinaryTree;
+import source.ConcurrentBinaryTree;
+import source.EulerTour;
+import source.ExpressionTree;
+import source.LevelVisitor;
+import source.LCAIndex;
 import source.LinkedBinaryTree;
+import source.MappedView;
+import source.OffHeapBinaryTree;
+import source.PersistentBinaryTree;
+import source.SplayTree;
+import source.SubtreeTable;
+import source.SubtreeView;
+import source.Summary;
+import source.SummaryTree;
+import source.ThreadedBinaryTree;
+import source.TraversalSnapshot;
+import source.Treap;
+import source.TreeBatch;
+import source.TreeBuilder;
+import source.VanEmdeBoasLayout;
+import tad_lista_de_nodos.ConcurrentPositionList;
+import tad_lista_de_nodos.NodePositionList;
+import tad_lista_de_nodos.PositionList;
 
 class LinkedBinaryTreeTest {
 
@@ -159,6 +195,103 @@ class LinkedBinaryTreeTest {
 		assertEquals("Root2", tree.right(leftChild).element());
 	}
 
+	@Test
+	void testStalePositions() {
+		LinkedBinaryTree<String> other = new LinkedBinaryTree<>();
+		Position<String> otherRoot = other.addRoot("Other");
+		Position<String> root = tree.addRoot("Root");
+		Position<String> leftChild = tree.insertLeft(root, "Left");
+
+		assertThrows(InvalidPositionException.class, () -> tree.insertLeft(otherRoot, "X"));
+		tree.remove(leftChild);
+		assertThrows(InvalidPositionException.class, () -> tree.remove(leftChild));
+		assertThrows(InvalidPositionException.class, () -> tree.insertRight(leftChild, "X"));
+		assertEquals(1, tree.size());
+	}
+
+	@Test
+	void testAttachInvalidatesSubtrees() {
+		LinkedBinaryTree<String> tree1 = new LinkedBinaryTree<>();
+		LinkedBinaryTree<String> tree2 = new LinkedBinaryTree<>();
+		Position<String> root1 = tree1.addRoot("Root1");
+		Position<String> child1 = tree1.insertLeft(root1, "Child1");
+		tree2.addRoot("Root2");
+
+		Position<String> root = tree.addRoot("Root");
+		tree.attach(root, tree1, tree2);
+
+		assertTrue(tree1.isEmpty());
+		assertTrue(tree2.isEmpty());
+		assertThrows(InvalidPositionException.class, () -> tree1.insertRight(root1, "X"));
+		assertEquals(root1, tree.parent(child1));
+		assertThrows(InvalidPositionException.class, () -> tree.attach(child1, tree, tree2));
+	}
+
+	@Test
+	void testAttachTransfersSize() {
+		LinkedBinaryTree<String> tree1 = new LinkedBinaryTree<>();
+		LinkedBinaryTree<String> tree2 = new LinkedBinaryTree<>();
+		tree1.insertLeft(tree1.addRoot("Root1"), "Child1");
+		tree2.addRoot("Root2");
+
+		Position<String> root = tree.addRoot("Root");
+		Position<String> leftChild = tree.insertLeft(root, "Left");
+		tree.attach(leftChild, tree1, tree2);
+
+		assertEquals(5, tree.size());
+		assertEquals(5, tree.subtreeSize(root));
+		assertEquals(4, tree.subtreeSize(leftChild));
+		assertEquals(0, tree1.size());
+	}
+
+	@Test
+	void testDetach() {
+		Position<String> root = tree.addRoot("Root");
+		Position<String> leftChild = tree.insertLeft(root, "Left");
+		Position<String> grandChild = tree.insertRight(leftChild, "GrandChild");
+		tree.insertRight(root, "Right");
+
+		LinkedBinaryTree<String> detached = tree.detachLeft(root);
+
+		assertEquals(2, tree.size());
+		assertEquals(2, tree.subtreeSize(root));
+		assertFalse(tree.hasLeft(root));
+		assertEquals(2, detached.size());
+		assertEquals(leftChild, detached.root());
+		assertEquals(leftChild, detached.parent(grandChild));
+		assertThrows(InvalidPositionException.class, () -> tree.parent(grandChild));
+		assertThrows(BoundaryViolationException.class, () -> tree.detachLeft(root));
+
+		tree.attach(tree.right(root), detached, new LinkedBinaryTree<>());
+		assertEquals(4, tree.size());
+		assertEquals(grandChild, tree.right(leftChild));
+	}
+
+	@Test
+	void testGraft() {
+		Position<String> root = tree.addRoot("Root");
+		Position<String> leftChild = tree.insertLeft(root, "Left");
+		Position<String> rightChild = tree.insertRight(root, "Right");
+
+		PositionList<Position<String>> nodes = new NodePositionList<>();
+		PositionList<BinaryTree<String>> lefts = new NodePositionList<>();
+		PositionList<BinaryTree<String>> rights = new NodePositionList<>();
+		for (Position<String> v : List.of(leftChild, rightChild)) {
+			LinkedBinaryTree<String> t1 = new LinkedBinaryTree<>();
+			t1.addRoot(v.element() + "1");
+			LinkedBinaryTree<String> t2 = new LinkedBinaryTree<>();
+			t2.insertLeft(t2.addRoot(v.element() + "2"), v.element() + "3");
+			nodes.addLast(v);
+			lefts.addLast(t1);
+			rights.addLast(t2);
+		}
+		tree.graft(nodes, lefts, rights);
+
+		assertEquals(9, tree.size());
+		assertEquals(4, tree.subtreeSize(rightChild));
+		assertEquals("Right3", tree.left(tree.right(rightChild)).element());
+	}
+
 	@Test
 	void testInOrderPositions() {
         LinkedBinaryTree<Integer> tree = new LinkedBinaryTree<>();
@@ -180,6 +313,912 @@ class LinkedBinaryTreeTest {
         assertEquals(expected, actual);
 	}
 
+	@Test
+	void testFromSorted() {
+		LinkedBinaryTree<Integer> balanced = LinkedBinaryTree.fromSorted(new Integer[] { 1, 2, 3, 4, 5, 6, 7 });
+		assertEquals(7, balanced.size());
+		assertEquals(4, balanced.root().element());
+		assertEquals(3, balanced.subtreeSize(balanced.left(balanced.root())));
+
+		List<Integer> actual = new ArrayList<>();
+		for (Position<Integer> position : balanced.positionsInorder())
+			actual.add(position.element());
+		assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), actual);
+		assertEquals(5, LinkedBinaryTree.fromSorted(List.of(1, 2, 3, 4, 5)).size());
+	}
+
+	@Test
+	void testFromPreorderInorder() {
+		LinkedBinaryTree<Integer> built = LinkedBinaryTree.fromPreorderInorder(
+				new Integer[] { 58, 31, 25, 12, 42, 36, 90, 62, 75 },
+				new Integer[] { 12, 25, 31, 36, 42, 58, 62, 75, 90 });
+		assertEquals(9, built.size());
+		assertEquals(62, built.left(built.right(built.root())).element());
+		assertEquals(75, built.right(built.left(built.right(built.root()))).element());
+		assertEquals(3, built.subtreeSize(built.right(built.root())));
+
+		// Os nodos são casados pelos elementos: nulos e repetidos são rejeitados
+		assertThrows(IllegalArgumentException.class, () -> LinkedBinaryTree.fromPreorderInorder(
+				new Integer[] { 1, 1 }, new Integer[] { 1, 1 }));
+		assertThrows(IllegalArgumentException.class, () -> LinkedBinaryTree.fromPreorderInorder(
+				new Integer[] { 1, null }, new Integer[] { null, 1 }));
+		assertThrows(IllegalArgumentException.class, () -> LinkedBinaryTree.fromPreorderInorder(
+				new Integer[] { 1, 2 }, new Integer[] { 2, 3 }));
+	}
+
+	@Test
+	void testFromLevelOrder() {
+		LinkedBinaryTree<String> built = LinkedBinaryTree.fromLevelOrder(new String[] { "A", "B", "C", null, "D" });
+		assertEquals(4, built.size());
+		assertEquals("D", built.right(built.left(built.root())).element());
+		assertFalse(built.hasLeft(built.left(built.root())));
+		assertThrows(IllegalArgumentException.class,
+				() -> LinkedBinaryTree.fromLevelOrder(new String[] { "A", null, "C", "D" }));
+	}
+
+	@Test
+	void testLevelOrder() {
+		LinkedBinaryTree<Integer> search = new LinkedBinaryTree<Integer>().makerBtSearch();
+
+		List<Integer> actual = new ArrayList<>();
+		for (Position<Integer> position : search.positionsLevelOrder())
+			actual.add(position.element());
+		assertEquals(List.of(58, 31, 90, 25, 42, 62, 12, 36, 75), actual);
+
+		List<Integer> sums = new ArrayList<>();
+		search.forEachLevel(new LevelVisitor<Integer>() {
+			int sum;
+			public void beginLevel(int depth) { sum = 0; }
+			public void visit(int depth, Position<Integer> v) { sum += v.element(); }
+			public void endLevel(int depth) { sums.add(sum); }
+		});
+		assertEquals(List.of(58, 121, 129, 123), sums);
+
+		assertEquals(62, search.findShallowest(e -> e > 60 && e < 80).element());
+		assertEquals(null, search.findShallowest(e -> e > 100));
+	}
+
+	@Test
+	void testThreadedInorder() {
+		ThreadedBinaryTree<Integer> threaded = new ThreadedBinaryTree<>();
+		Position<Integer> root = threaded.addRoot(58);
+		Position<Integer> n31 = threaded.insertLeft(root, 31);
+		Position<Integer> n90 = threaded.insertRight(root, 90);
+		Position<Integer> n25 = threaded.insertLeft(n31, 25);
+		Position<Integer> n42 = threaded.insertRight(n31, 42);
+		threaded.insertLeft(n25, 12);
+		threaded.insertLeft(n42, 36);
+		Position<Integer> n62 = threaded.insertLeft(n90, 62);
+		threaded.insertRight(n62, 75);
+
+		List<Integer> actual = new ArrayList<>();
+		for (Position<Integer> v = threaded.inorderFirst(); v != threaded.inorderLast(); v = threaded.inorderNext(v))
+			actual.add(v.element());
+		assertEquals(List.of(12, 25, 31, 36, 42, 58, 62, 75), actual);
+		assertEquals(58, threaded.inorderPrev(n62).element());
+		assertThrows(BoundaryViolationException.class, () -> threaded.inorderNext(threaded.inorderLast()));
+
+		threaded.remove(n25);
+		threaded.remove(n62);
+		threaded.remove(n90);
+		actual.clear();
+		for (Position<Integer> position : threaded.positionsInorder())
+			actual.add(position.element());
+		assertEquals(List.of(12, 31, 36, 42, 58, 75), actual);
+
+		ThreadedBinaryTree<Integer> detached = (ThreadedBinaryTree<Integer>) threaded.detachLeft(root);
+		assertEquals(58, threaded.inorderFirst().element());
+		assertEquals(42, detached.inorderLast().element());
+		threaded.attach(threaded.inorderLast(), detached, new ThreadedBinaryTree<>());
+		actual.clear();
+		for (Position<Integer> position : threaded.positionsInorder())
+			actual.add(position.element());
+		assertEquals(List.of(58, 12, 31, 36, 42, 75), actual);
+	}
+
+	@Test
+	void testLCAIndex() {
+		LinkedBinaryTree<Integer> search = new LinkedBinaryTree<Integer>().makerBtSearch();
+		Position<Integer> n31 = search.left(search.root());
+		Position<Integer> n12 = search.left(search.left(n31));
+		Position<Integer> n36 = search.left(search.right(n31));
+		Position<Integer> n75 = search.right(search.left(search.right(search.root())));
+
+		LCAIndex<Integer> index = new LCAIndex<>(search);
+		assertEquals(n31, index.lca(n12, n36));
+		assertEquals(search.root(), index.lca(n36, n75));
+		assertEquals(n31, index.lca(n31, n36));
+		assertEquals(3, index.depth(n75));
+		assertEquals(4, index.distance(n12, n36));
+		assertTrue(index.isAncestor(n31, n12));
+		assertFalse(index.isAncestor(n12, n31));
+
+		Position<Integer> n40 = search.insertRight(n36, 40);
+		assertEquals(n31, index.lca(n12, n40));
+		assertEquals(4, index.depth(n40));
+		search.remove(n40);
+		assertThrows(InvalidPositionException.class, () -> index.depth(n40));
+	}
+
+	@Test
+	void testStructuralHashing() {
+		String[] expression = { "(", "(", "3", "+", "1", ")", "*", "(", "3", "+", "1", ")", ")" };
+		LinkedBinaryTree<String> first = tree.buildExpression(expression);
+		LinkedBinaryTree<String> second = tree.buildExpression(expression);
+
+		assertEquals(first.structuralHash(), second.structuralHash());
+		assertTrue(first.structurallyEquals(second));
+		assertEquals(first.subtreeHash(first.left(first.root())), first.subtreeHash(first.right(first.root())));
+
+		Position<String> changed = second.right(second.right(second.root()));
+		second.replace(changed, "2");
+		assertFalse(first.structurallyEquals(second));
+		List<String> diff = new ArrayList<>();
+		for (Position<String> v : second.diff(first))
+			diff.add(v.element());
+		assertEquals(List.of("2"), diff);
+
+		// "Aa" e "BB" têm o mesmo hashCode: só o diff exato percebe a troca
+		second.replace(changed, "Aa");
+		LinkedBinaryTree<String> collided = second.copy();
+		collided.replace(collided.right(collided.right(collided.root())), "BB");
+		assertEquals(second.structuralHash(), collided.structuralHash());
+		assertFalse(collided.structurallyEquals(second));
+		assertTrue(collided.diff(second).isEmpty());
+		assertEquals("BB", collided.diff(second, true).first().element().element());
+
+		SubtreeTable<String> table = new SubtreeTable<>();
+		Position<String> canonical = table.intern(first, first.left(first.root()));
+		assertEquals(canonical, table.intern(first, first.right(first.root())));
+		assertEquals(canonical, table.intern(second, second.left(second.root())));
+		assertEquals(1, table.size());
+	}
+
+	@Test
+	void testPersistentVersions() {
+		PersistentBinaryTree<String> empty = new PersistentBinaryTree<>();
+		PersistentBinaryTree<String> v1 = empty.addRoot("Root");
+		PersistentBinaryTree<String> v2 = v1.insertLeft(v1.root(), "Left");
+		PersistentBinaryTree<String> v3 = v2.insertRight(v2.root(), "Right");
+		PersistentBinaryTree<String> v4 = v3.update(v3.left(v3.root()), "Changed");
+
+		assertEquals(0, empty.size());
+		assertEquals(1, v1.size());
+		assertEquals(3, v3.size());
+		assertEquals("Left", v3.left(v3.root()).element());
+		assertEquals("Changed", v4.left(v4.root()).element());
+		assertEquals(v3.root(), v3.parent(v3.left(v3.root())));
+		assertThrows(InvalidPositionException.class, () -> v4.left(v3.root()));
+		assertThrows(UnsupportedOperationException.class, () -> v4.replace(v4.root(), "X"));
+
+		PersistentBinaryTree<String> v5 = v4.remove(v4.left(v4.root()));
+		assertEquals(2, v5.size());
+		assertFalse(v5.hasLeft(v5.root()));
+		assertEquals(3, v4.size());
+
+		LinkedBinaryTree<String> linked = new LinkedBinaryTree<>();
+		linked.insertRight(linked.addRoot("Root"), "Right");
+		assertEquals(linked.structuralHash(), v5.structuralHash());
+	}
+
+	@Test
+	void testPersistentBuilder() {
+		PersistentBinaryTree<Integer> base = new PersistentBinaryTree<Integer>().addRoot(1);
+		PersistentBinaryTree.Builder<Integer> builder = base.toBuilder();
+		Position<Integer> root = builder.root();
+		Position<Integer> left = builder.insertLeft(root, 2);
+		builder.insertRight(root, 3);
+		builder.insertLeft(left, 4);
+		assertEquals(Integer.valueOf(2), builder.update(left, 5));
+		PersistentBinaryTree<Integer> built = builder.persistent();
+
+		assertEquals(1, base.size());
+		assertEquals(4, built.size());
+		assertEquals(5, built.left(built.root()).element());
+		assertEquals(4, built.left(built.left(built.root())).element());
+		assertThrows(IllegalStateException.class, () -> builder.insertRight(left, 6));
+		assertEquals(built, built.snapshot());
+	}
+
+	@Test
+	void testPersistentBuilderCursorsStayValid() {
+		PersistentBinaryTree<String> base = new PersistentBinaryTree<String>().addRoot("R");
+		base = base.insertLeft(base.root(), "l");
+		base = base.insertRight(base.root(), "x");
+		PersistentBinaryTree.Builder<String> builder = base.toBuilder();
+		Position<String> l = builder.left(builder.root());
+		Position<String> x = builder.right(builder.root()); // outra chamada a root()
+		assertEquals("l", builder.update(l, "L"));
+		assertEquals("x", builder.update(x, "X"));
+		assertEquals("L", l.element());
+		assertEquals(builder.left(builder.root()), l);
+		assertEquals(builder.left(builder.root()).hashCode(), l.hashCode());
+
+		PersistentBinaryTree.Builder<String> other = base.toBuilder();
+		Position<String> foreign = other.left(other.root());
+		assertThrows(InvalidPositionException.class, () -> builder.update(foreign, "Y"));
+		assertEquals("l", foreign.element());
+
+		PersistentBinaryTree<String> built = builder.persistent();
+		assertEquals("L", built.left(built.root()).element());
+		assertEquals("X", built.right(built.root()).element());
+		assertEquals("l", base.left(base.root()).element());
+	}
+
+	@Test
+	void testVanEmdeBoasLayout() {
+		Integer[] keys = new Integer[100];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = 2 * i;
+		LinkedBinaryTree<Integer> balanced = LinkedBinaryTree.fromSorted(keys);
+
+		for (VanEmdeBoasLayout.Order order : VanEmdeBoasLayout.Order.values()) {
+			VanEmdeBoasLayout<Integer> layout = new VanEmdeBoasLayout<>(balanced, null, order);
+			assertEquals(100, layout.size());
+			assertTrue(layout.contains(0));
+			assertTrue(layout.contains(198));
+			assertFalse(layout.contains(51));
+			assertEquals(5, layout.countInRange(10, 19));
+			List<Integer> actual = new ArrayList<>();
+			for (Integer k : layout.range(-5, 7))
+				actual.add(k);
+			assertEquals(List.of(0, 2, 4, 6), actual);
+		}
+
+		VanEmdeBoasLayout<String> strings = new VanEmdeBoasLayout<>(
+				LinkedBinaryTree.fromSorted(new String[] { "a", "b", "c", "d" }));
+		assertTrue(strings.contains("c"));
+		assertEquals(2, strings.countInRange("b", "c"));
+
+		// Árvore degenerada (só filhos da direita): a construção não usa recursão
+		TreeBuilder<Integer> chain = new TreeBuilder<>();
+		for (int i = 0; i < 100000; i++)
+			chain.open(i).skip();
+		for (int i = 0; i < 100000; i++)
+			chain.close();
+		VanEmdeBoasLayout<Integer> skewed = new VanEmdeBoasLayout<>(chain.build());
+		assertEquals(100000, skewed.size());
+		assertTrue(skewed.contains(99999));
+		assertEquals(10, skewed.countInRange(500, 509));
+	}
+
+	@Test
+	void testOrderStatistics() {
+		LinkedBinaryTree<Integer> search = new LinkedBinaryTree<Integer>().makerBtSearch();
+
+		assertEquals(12, search.select(1).element());
+		assertEquals(42, search.select(5).element());
+		assertEquals(90, search.select(9).element());
+		assertThrows(BoundaryViolationException.class, () -> search.select(10));
+		assertEquals(6, search.rank(search.root()));
+		assertEquals(8, search.rank(search.select(8)));
+		assertEquals(5, search.rank(50));
+		assertEquals(4, search.rank(42));
+		assertEquals(4, search.countInRange(30, 60));
+		assertEquals(0, search.countInRange(60, 30));
+
+		search.insertLeft(search.select(1), 5);
+		assertEquals(5, search.select(1).element());
+		assertEquals(6, search.rank(50));
+	}
+
+	@Test
+	void testIncrementalEvaluation() {
+		String[] expression = { "(", "(", "(", "(", "3", "+", "1", ")", "*", "3", ")", "/", "(", "(", "9", "-", "5",
+				")", "+", "2", ")", ")", "-", "(", "(", "3", "*", "(", "7", "-", "4", ")", ")", "+", "6", ")", ")" };
+		ExpressionTree incremental = ExpressionTree.build(expression);
+		LinkedBinaryTree<String> plain = tree.buildExpression(expression);
+
+		assertEquals(plain.evaluateExpression(plain, plain.root()), incremental.evaluate());
+		assertEquals(-13.0, incremental.evaluate());
+
+		Position<String> seven = incremental.left(incremental.right(incremental.left(incremental.right(incremental.root()))));
+		Position<String> untouched = incremental.left(incremental.root());
+		incremental.replace(seven, "10");
+		plain.replace(plain.left(plain.right(plain.left(plain.right(plain.root())))), "10");
+		assertEquals(2.0, incremental.evaluate(untouched));
+		assertEquals(plain.evaluateExpression(plain, plain.root()), incremental.evaluate());
+
+		incremental.replace(seven, "x");
+		assertThrows(IllegalArgumentException.class, () -> incremental.evaluate());
+
+		// Operador só com o filho da esquerda: a esquerda é avaliada primeiro
+		ExpressionTree oneChild = new ExpressionTree();
+		oneChild.insertLeft(oneChild.addRoot("+"), "x");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> oneChild.evaluate());
+		assertEquals("Valor inválido: x", e.getMessage());
+		assertThrows(IllegalArgumentException.class, () -> oneChild.evaluateExpression(oneChild, oneChild.root()));
+		oneChild.replace(oneChild.left(oneChild.root()), "1");
+		BoundaryViolationException b = assertThrows(BoundaryViolationException.class, () -> oneChild.evaluate());
+		assertEquals("No right child", b.getMessage());
+	}
+
+	@Test
+	void testCopy() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		LinkedBinaryTree<Integer> copy = search.copy();
+
+		assertTrue(copy.structurallyEquals(search));
+		assertEquals(search.size(), copy.size());
+		copy.replace(copy.root(), 0);
+		assertEquals(58, search.root().element());
+		assertThrows(InvalidPositionException.class, () -> copy.left(search.root()));
+
+		LinkedBinaryTree<String> mapped = search.copySubtree(search.left(search.root()), x -> "k" + x, false);
+		assertEquals(5, mapped.size());
+		assertEquals("k31", mapped.root().element());
+		assertEquals("k12", mapped.select(1).element());
+
+		Integer[] keys = new Integer[200000];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = i;
+		LinkedBinaryTree<Integer> large = LinkedBinaryTree.fromSorted(keys);
+		LinkedBinaryTree<Integer> parallel = large.copy(x -> x, true);
+		assertEquals(large.size(), parallel.size());
+		assertTrue(parallel.structurallyEquals(large));
+		assertEquals(100000, parallel.rank(parallel.select(100000)));
+	}
+
+	@Test
+	void testFootprint() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		Footprint f = search.footprint();
+		long node = Footprint.shallowSize(search.root());
+
+		assertEquals(Footprint.HEADER == 12 ? 16 : 24, Footprint.shallowSize(Integer.valueOf(7)));
+		assertEquals(11, f.objects());
+		assertTrue(f.structureBytes() >= 9 * node);
+		assertEquals(9 * Footprint.shallowSize(Integer.valueOf(7)), f.elementBytes());
+
+		NodePositionList<String> list = new NodePositionList<String>();
+		String shared = "abc";
+		list.addLast(shared);
+		list.addLast(shared);
+		Footprint g = list.footprint();
+		assertEquals(5, g.objects()); // a lista, as duas sentinelas e os dois nodos
+		assertEquals(Footprint.shallowSize(shared) + Footprint.arraySize(3, 1), g.elementBytes());
+
+		long allocated = Footprint.allocatedBytes(() -> search.positions());
+		assertTrue(allocated == -1 || allocated >= 9 * Footprint.shallowSize(list.first()));
+	}
+
+	@Test
+	void testOffHeapTree() throws Exception {
+		OffHeapBinaryTree offHeap = new OffHeapBinaryTree();
+		Position<Long> r = offHeap.addRoot(58);
+		Position<Long> l = offHeap.insertLeft(r, 31);
+		offHeap.insertRight(r, 90);
+		Position<Long> leaf = offHeap.insertLeft(l, 25);
+
+		assertEquals(4, offHeap.size());
+		assertEquals(31L, offHeap.parent(leaf).element());
+		assertTrue(offHeap.isRoot(offHeap.parent(l)));
+		assertEquals(25L, offHeap.remove(leaf));
+		assertThrows(InvalidPositionException.class, () -> offHeap.getLong(leaf));
+		offHeap.setDouble(offHeap.insertRight(l, 0), 2.5);
+		assertEquals(2.5, offHeap.getDouble(offHeap.right(l)));
+		offHeap.close();
+		assertThrows(IllegalStateException.class, () -> offHeap.size());
+
+		Path file = Files.createTempFile("tree", ".bin");
+		try {
+			try (OffHeapBinaryTree mapped = OffHeapBinaryTree.map(file)) {
+				Position<Long> v = mapped.addRoot(0);
+				for (long i = 1; i < 100000; i++)
+					v = mapped.insertRight(v, i);
+			}
+			try (OffHeapBinaryTree mapped = OffHeapBinaryTree.map(file)) {
+				assertEquals(100000, mapped.size());
+				assertEquals(1L, mapped.right(mapped.root()).element());
+			}
+			// O arquivo é little-endian seja qual for a máquina: cabeçalho com o tamanho
+			ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(100000, header.getInt(4));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void testConcurrentTree() throws Exception {
+		ConcurrentBinaryTree<Integer> shared = new ConcurrentBinaryTree<Integer>();
+		List<Position<Integer>> leaves = new ArrayList<>();
+		leaves.add(shared.addRoot(0));
+		for (int level = 0; level < 3; level++) {
+			List<Position<Integer>> next = new ArrayList<>();
+			for (Position<Integer> v : leaves) {
+				next.add(shared.insertLeft(v, 0));
+				next.add(shared.insertRight(v, 0));
+			}
+			leaves = next;
+		}
+		List<Thread> writers = new ArrayList<>();
+		for (Position<Integer> leaf : leaves) {
+			writers.add(new Thread(() -> {
+				Position<Integer> v = leaf;
+				for (int i = 1; i <= 2000; i++) {
+					Position<Integer> w = shared.insertLeft(v, i);
+					if (i % 2 == 0) {
+						shared.remove(w); // remove o nodo recém-inserido
+					} else {
+						shared.replace(w, -i);
+						v = w;
+					}
+				}
+			}));
+		}
+		// Leitores concorrentes: cada cópia é uma fotografia coerente da árvore
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					LinkedBinaryTree<Integer> c = shared.copy();
+					int nodes = 0;
+					for (Position<Integer> v : c.positions())
+						nodes++;
+					assertEquals(nodes, c.size());
+					assertEquals(c.structuralHash(), c.copy().structuralHash());
+					// select e rank são chamadas separadas: entre elas a posição pode mudar
+					assertTrue(shared.rank(shared.select(1)) >= 1);
+				}
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		});
+		reader.start();
+		for (Thread t : writers)
+			t.start();
+		for (Thread t : writers)
+			t.join();
+		done.set(true);
+		reader.join();
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+
+		assertEquals(15 + 8 * 1000, shared.size());
+		assertEquals(shared.size(), shared.subtreeSize(shared.root()));
+		assertEquals(shared.copy().structuralHash(), shared.structuralHash());
+		assertEquals(shared.size(), shared.rank(shared.select(shared.size())));
+	}
+
+	@Test
+	void testConcurrentListAndStack() throws Exception {
+		ConcurrentPositionList<Integer> queue = new ConcurrentPositionList<Integer>();
+		ConcurrentNodeStack<Integer> stack = new ConcurrentNodeStack<Integer>();
+		int producers = 4, perProducer = 5000;
+		boolean[] taken = new boolean[producers * perProducer];
+		AtomicInteger duplicates = new AtomicInteger();
+		AtomicInteger consumed = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int base = p * perProducer;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					queue.addLast(base + i);
+					stack.push(base + i);
+				}
+			}));
+			threads.add(new Thread(() -> { // consumidor: disputa o primeiro elemento da lista
+				while (consumed.get() < producers * perProducer) {
+					try {
+						int x = queue.remove(queue.first());
+						synchronized (taken) {
+							if (taken[x])
+								duplicates.incrementAndGet();
+							taken[x] = true;
+						}
+						consumed.incrementAndGet();
+					} catch (tad_lista_de_nodos.EmptyListException | tad_lista_de_nodos.InvalidPositionException e) {
+						// lista vazia ou posição tomada por outro consumidor
+					}
+				}
+			}));
+		}
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(0, duplicates.get());
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.size());
+		assertEquals(producers * perProducer, stack.size());
+		long sum = 0;
+		for (int x : stack)
+			sum += x;
+		int n = producers * perProducer;
+		assertEquals((long) n * (n - 1) / 2, sum);
+		while (!stack.isEmpty())
+			stack.pop();
+		assertEquals(0, stack.size());
+	}
+
+	@Test
+	void testTreeBatch() {
+		LinkedBinaryTree<Integer> batched = tree.makerBtSearch();
+		LinkedBinaryTree<Integer> oneByOne = tree.makerBtSearch();
+
+		TreeBatch<Integer> batch = batched.batch();
+		Position<Integer> ten = batch.insertLeft(batched.select(1), 10);
+		batch.insertLeft(ten, 5);
+		batch.replace(batched.root(), 60);
+		batch.remove(batched.select(9)); // 90, que tem só o filho da esquerda
+		assertEquals(9, batched.size()); // nada muda antes de apply
+		assertThrows(InvalidPositionException.class, () -> batched.left(ten));
+		batch.apply();
+		assertThrows(IllegalStateException.class, () -> batch.remove(ten));
+
+		oneByOne.insertLeft(oneByOne.insertLeft(oneByOne.select(1), 10), 5);
+		oneByOne.replace(oneByOne.root(), 60);
+		oneByOne.remove(oneByOne.select(11));
+		assertEquals(10, batched.size());
+		assertEquals(10, batched.subtreeSize(batched.root()));
+		assertTrue(batched.structurallyEquals(oneByOne));
+		assertEquals(oneByOne.structuralHash(), batched.structuralHash());
+		assertEquals(5, batched.left(ten).element());
+
+		ThreadedBinaryTree<Integer> threaded = new ThreadedBinaryTree<Integer>();
+		Position<Integer> r = threaded.addRoot(2);
+		TreeBatch<Integer> tb = threaded.batch();
+		tb.insertRight(tb.insertLeft(r, 0), 1);
+		tb.insertRight(r, 3);
+		tb.apply();
+		List<Integer> inorder = new ArrayList<>();
+		for (Position<Integer> v : threaded.positionsInorder())
+			inorder.add(v.element());
+		assertEquals(List.of(0, 1, 2, 3), inorder);
+		assertEquals(1, threaded.inorderPrev(r).element());
+	}
+
+	@Test
+	void testFailedBatchLeavesTreeUnchanged() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		int hash = search.structuralHash();
+		long mods = search.modCount();
+		Position<Integer> first = search.select(1);
+
+		TreeBatch<Integer> conflict = search.batch();
+		conflict.replace(search.root(), 99);
+		Position<Integer> added = conflict.insertLeft(first, 5);
+		conflict.insertRight(added, 7);
+		conflict.insertLeft(first, 6); // a posição já foi ocupada pelo próprio lote
+		assertThrows(InvalidPositionException.class, () -> conflict.apply());
+
+		TreeBatch<Integer> removed = search.batch();
+		removed.insertLeft(first, 5);
+		removed.remove(search.select(9));
+		removed.replace(search.select(9), 0); // alvo removido pelo lote
+		assertThrows(InvalidPositionException.class, () -> removed.apply());
+
+		Position<Integer> pending = search.batch().insertLeft(first, 5); // nodo de outro lote, nunca inserido
+		TreeBatch<Integer> foreign = search.batch();
+		foreign.replace(first, 1);
+		foreign.insertLeft(pending, 3);
+		assertThrows(InvalidPositionException.class, () -> foreign.apply());
+
+		TreeBatch<Integer> twoChildren = search.batch();
+		twoChildren.insertLeft(first, 5);
+		twoChildren.remove(search.root()); // a raiz tem dois filhos
+		assertThrows(InvalidPositionException.class, () -> twoChildren.apply());
+
+		assertEquals(9, search.size());
+		assertEquals(hash, search.structuralHash());
+		assertEquals(mods, search.modCount());
+		assertFalse(search.hasLeft(first));
+		assertEquals(9, search.subtreeSize(search.root()));
+	}
+
+	@Test
+	void testTraversalCache() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		List<Integer> expected = new ArrayList<>();
+		for (Position<Integer> v : search.positions())
+			expected.add(v.element());
+
+		search.setTraversalCache(true);
+		Iterable<Position<Integer>> first = search.positions();
+		assertTrue(first == search.positions());
+		List<Integer> cached = new ArrayList<>();
+		first.forEach(v -> cached.add(v.element()));
+		assertEquals(expected, cached);
+		assertEquals(12, ((TraversalSnapshot<Position<Integer>>) search.positionsInorder()).get(0).element());
+
+		search.replace(search.root(), 59);
+		assertTrue(first == search.positions());
+		assertEquals(59, search.iterator().next());
+
+		search.insertLeft(search.select(1), 5);
+		assertFalse(first == search.positions());
+		assertEquals(5, search.positionsInorder().iterator().next().element());
+		assertEquals(10, ((TraversalSnapshot<Position<Integer>>) search.positions()).size());
+	}
+
+	@Test
+	void testAsyncEvaluation() {
+		String[] numbers = { "(", "(", "(", "(", "3", "+", "1", ")", "*", "3", ")", "/", "(", "(", "9", "-", "5",
+				")", "+", "2", ")", ")", "-", "(", "(", "3", "*", "(", "7", "-", "4", ")", ")", "+", "6", ")", ")" };
+		LinkedBinaryTree<String> numeric = tree.buildExpression(numbers);
+		double expected = numeric.evaluateExpression(numeric, numeric.root());
+		for (int depth = 0; depth <= 4; depth++) {
+			AsyncEvaluator evaluator = new AsyncEvaluator(ForkJoinPool.commonPool(), name -> null, depth);
+			assertEquals(expected, evaluator.evaluate(numeric).join());
+		}
+
+		String[] variables = { "(", "(", "x", "+", "3", ")", "*", "(", "y", "-", "1", ")", ")" };
+		LinkedBinaryTree<String> expression = tree.buildExpression(variables);
+		Map<String, Double> values = Map.of("x", 2.0, "y", 4.0);
+		AsyncEvaluator evaluator = new AsyncEvaluator(ForkJoinPool.commonPool(), values::get, 2);
+		assertEquals(15.0, evaluator.evaluate(expression).join());
+		assertEquals(3.0, evaluator.evaluate(expression, expression.right(expression.root())).join());
+
+		AsyncEvaluator missing = new AsyncEvaluator(ForkJoinPool.commonPool(), name -> null, 2);
+		CompletionException e = assertThrows(CompletionException.class, () -> missing.evaluate(expression).join());
+		assertTrue(e.getCause() instanceof IllegalArgumentException);
+		assertThrows(IllegalArgumentException.class, () -> new AsyncEvaluator(ForkJoinPool.commonPool(), values::get, -1));
+
+		// Mesma ordem de exceções de evaluateExpression, com ou sem divisão em tarefas
+		LinkedBinaryTree<String> rightOnly = new LinkedBinaryTree<String>();
+		rightOnly.insertRight(rightOnly.addRoot("+"), "z");
+		LinkedBinaryTree<String> leftOnly = new LinkedBinaryTree<String>();
+		leftOnly.insertLeft(leftOnly.addRoot("+"), "z");
+		for (int depth : new int[] { 0, 2 }) {
+			AsyncEvaluator split = new AsyncEvaluator(ForkJoinPool.commonPool(), values::get, depth);
+			e = assertThrows(CompletionException.class, () -> split.evaluate(rightOnly).join());
+			assertEquals("No left child", e.getCause().getMessage());
+			e = assertThrows(CompletionException.class, () -> split.evaluate(leftOnly).join());
+			assertEquals("Valor inválido: z", e.getCause().getMessage());
+			leftOnly.replace(leftOnly.left(leftOnly.root()), "x");
+			e = assertThrows(CompletionException.class, () -> split.evaluate(leftOnly).join());
+			assertEquals("No right child", e.getCause().getMessage());
+			leftOnly.replace(leftOnly.left(leftOnly.root()), "z");
+		}
+	}
+
+	@Test
+	void testTreeBuilder() {
+		TreeBuilder<String> builder = new TreeBuilder<String>();
+		builder.open("*").open("+").leaf("1").leaf("2").close().open("-").skip().leaf("3").close().close();
+		LinkedBinaryTree<String> built = builder.build();
+		assertEquals(6, built.size());
+		List<String> preorder = new ArrayList<>();
+		for (Position<String> v : built.positions())
+			preorder.add(v.element());
+		assertEquals(List.of("*", "+", "1", "2", "-", "3"), preorder);
+		Position<String> minus = built.right(built.root());
+		assertFalse(built.hasLeft(minus));
+		assertEquals("3", built.right(minus).element());
+		assertEquals(2, built.subtreeSize(minus));
+		assertThrows(IllegalStateException.class, () -> builder.leaf("4"));
+
+		List<LinkedBinaryTree<String>> flushed = new ArrayList<>();
+		TreeBuilder<String> streaming = new TreeBuilder<String>(1, flushed::add);
+		streaming.open("*").open("+").leaf("1").leaf("2").close();
+		assertEquals(1, flushed.size());
+		assertEquals(3, flushed.get(0).size());
+		assertEquals(3.0, flushed.get(0).evaluateExpression(flushed.get(0), flushed.get(0).root()));
+		streaming.leaf("3").close();
+		assertEquals(2, flushed.size());
+		LinkedBinaryTree<String> top = streaming.build();
+		assertEquals(1, top.size());
+		assertTrue(top.isExternal(top.root()));
+
+		TreeBuilder<String> invalid = new TreeBuilder<String>();
+		assertThrows(IllegalStateException.class, () -> invalid.close());
+		invalid.open("+").leaf("1").leaf("2");
+		assertThrows(IllegalStateException.class, () -> invalid.leaf("3"));
+		assertThrows(IllegalStateException.class, () -> invalid.build());
+		invalid.close();
+		assertThrows(IllegalStateException.class, () -> invalid.open("-"));
+	}
+
+	@Test
+	void testSummaryTree() {
+		SummaryTree<Integer, Integer> maxTree = new SummaryTree<Integer, Integer>(Summary.max());
+		Position<Integer> root = maxTree.addRoot(10);
+		Position<Integer> left = maxTree.insertLeft(root, 4);
+		Position<Integer> right = maxTree.insertRight(root, 7);
+		Position<Integer> deep = maxTree.insertLeft(left, 25);
+		assertEquals(25, maxTree.summary());
+		assertEquals(7, maxTree.summary(right));
+
+		maxTree.replace(deep, 3);
+		assertEquals(10, maxTree.summary());
+		assertEquals(4, maxTree.summary(left));
+
+		List<Integer> over = new ArrayList<>();
+		AtomicInteger visited = new AtomicInteger();
+		for (Position<Integer> v : maxTree.find(s -> { visited.incrementAndGet(); return s > 5; }, e -> e > 5))
+			over.add(v.element());
+		assertEquals(List.of(10, 7), over);
+		assertEquals(3, visited.get()); // a subárvore de 4 é descartada sem visitar 3
+		assertFalse(maxTree.anyMatch(s -> s > 10, e -> e > 10));
+
+		SummaryTree<Integer, Integer> extra = new SummaryTree<Integer, Integer>(maxTree.getSummary());
+		extra.addRoot(40);
+		maxTree.remove(deep);
+		Position<Integer> leaf = maxTree.insertRight(left, 1);
+		SummaryTree<Integer, Integer> empty = new SummaryTree<Integer, Integer>(maxTree.getSummary());
+		maxTree.attach(leaf, extra, empty);
+		assertEquals(40, maxTree.summary());
+		assertEquals(40, maxTree.summary(left));
+		assertThrows(InvalidPositionException.class,
+				() -> maxTree.attach(right, new SummaryTree<Integer, Integer>(Summary.max()), empty));
+
+		SummaryTree<Integer, Double> sumTree = new SummaryTree<Integer, Double>(Summary.sum());
+		assertEquals(0.0, sumTree.summary());
+		Position<Integer> r = sumTree.addRoot(1);
+		sumTree.insertLeft(r, 2);
+		sumTree.insertRight(r, 3);
+		assertEquals(6.0, sumTree.summary());
+		TreeBatch<Integer> batch = sumTree.batch();
+		batch.replace(r, 10);
+		batch.insertLeft(sumTree.right(r), 4);
+		batch.apply();
+		assertEquals(19.0, sumTree.summary());
+	}
+
+	@Test
+	void testSplayTreeAndTreap() {
+		SplayTree<Integer> splay = new SplayTree<Integer>();
+		for (int k = 1; k <= 20; k++)
+			splay.insert(k);
+		assertEquals(7, splay.find(7).element());
+		assertEquals(7, splay.root().element());
+		assertEquals(null, splay.find(50));
+		assertEquals(20, splay.root().element()); // o último nodo visitado sobe
+		assertEquals(12, splay.delete(12));
+		assertEquals(null, splay.delete(12));
+		assertFalse(splay.contains(12));
+		List<Integer> keys = new ArrayList<>();
+		for (Position<Integer> v : splay.positionsInorder())
+			keys.add(v.element());
+		assertEquals(19, keys.size());
+		for (int i = 1; i < keys.size(); i++)
+			assertTrue(keys.get(i - 1) < keys.get(i));
+		assertEquals(19, splay.subtreeSize(splay.root()));
+		assertEquals(splay.copy().structuralHash(), splay.structuralHash());
+
+		Treap<Integer> treap = new Treap<Integer>(null, 42);
+		for (int k = 1; k <= 200; k++)
+			treap.insert(k);
+		Position<Integer> hot = treap.find(150);
+		for (int i = 0; i < 200; i++)
+			treap.find(150);
+		int depth = 0;
+		for (Position<Integer> v = hot; v != treap.root(); v = treap.parent(v))
+			depth++;
+		assertTrue(depth <= 3);
+		assertEquals(75, treap.delete(75));
+		assertFalse(treap.contains(75));
+		assertEquals(199, treap.size());
+		for (Position<Integer> v : treap.positions())
+			for (Position<Integer> c : treap.children(v))
+				assertTrue(treap.priority(c) <= treap.priority(v));
+		assertEquals(101, treap.select(100).element()); // 75 foi removida
+		assertEquals(treap.copy().structuralHash(), treap.structuralHash());
+	}
+
+	@Test
+	void testRotationsAndTwoChildRemove() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		List<Integer> expected = new ArrayList<>();
+		for (Position<Integer> v : search.positionsInorder())
+			expected.add(v.element());
+		Position<Integer> root = search.root();
+		Position<Integer> left = search.left(root);
+
+		assertEquals(left, search.rotateRight(root));
+		assertEquals(left, search.root());
+		assertEquals(root, search.right(left));
+		Position<Integer> back = search.rotateLeft(left);
+		assertEquals(root, back);
+		assertEquals(left, search.left(root));
+		assertThrows(BoundaryViolationException.class, () -> search.restructure(root));
+
+		Position<Integer> grandchild = search.right(search.left(root));
+		assertEquals(grandchild, search.restructure(grandchild)); // zig-zag: o neto sobe dois níveis
+		assertEquals(grandchild, search.root());
+		assertEquals(left, search.left(grandchild));
+		assertEquals(root, search.right(grandchild));
+		List<Integer> actual = new ArrayList<>();
+		for (Position<Integer> v : search.positionsInorder())
+			actual.add(v.element());
+		assertEquals(expected, actual);
+		assertEquals(search.copy().structuralHash(), search.structuralHash());
+		assertEquals(search.size(), search.subtreeSize(search.root()));
+
+		int removed = search.root().element();
+		assertEquals(removed, search.remove(search.root())); // raiz com dois filhos
+		expected.remove(Integer.valueOf(removed));
+		actual.clear();
+		for (Position<Integer> v : search.positionsInorder())
+			actual.add(v.element());
+		assertEquals(expected, actual);
+		assertEquals(left, search.select(search.rank(left))); // as posições continuam válidas
+		assertEquals(search.copy().structuralHash(), search.structuralHash());
+
+		ThreadedBinaryTree<Integer> threaded = new ThreadedBinaryTree<>();
+		Position<Integer> t50 = threaded.addRoot(50);
+		Position<Integer> t30 = threaded.insertLeft(t50, 30);
+		Position<Integer> t70 = threaded.insertRight(t50, 70);
+		threaded.insertLeft(t30, 20);
+		threaded.insertRight(t30, 40);
+		Position<Integer> t60 = threaded.insertLeft(t70, 60);
+		threaded.insertRight(t60, 65);
+		threaded.rotateRight(t50);
+		threaded.rotateLeft(t30);
+		threaded.restructure(t60);
+		threaded.remove(t50);
+		actual.clear();
+		for (Position<Integer> v = threaded.inorderFirst(); ; v = threaded.inorderNext(v)) {
+			actual.add(v.element());
+			if (v == threaded.inorderLast())
+				break;
+		}
+		assertEquals(List.of(20, 30, 40, 60, 65, 70), actual);
+		actual.clear();
+		for (Position<Integer> v = threaded.inorderLast(); ; v = threaded.inorderPrev(v)) {
+			actual.add(0, v.element());
+			if (v == threaded.inorderFirst())
+				break;
+		}
+		assertEquals(List.of(20, 30, 40, 60, 65, 70), actual);
+	}
+
+	@Test
+	void testTreeViews() {
+		LinkedBinaryTree<Integer> search = tree.makerBtSearch();
+		Position<Integer> left = search.left(search.root());
+		SubtreeView<Integer> view = search.subtreeView(left);
+		assertEquals(search.subtreeSize(left), view.size());
+		assertEquals(left, view.root());
+		assertTrue(view.isRoot(left));
+		assertThrows(BoundaryViolationException.class, () -> view.parent(left));
+		assertThrows(InvalidPositionException.class, () -> view.left(search.root()));
+		List<Integer> expected = new ArrayList<>();
+		for (Position<Integer> v : search.positions())
+			if (search.rank(v) < search.rank(search.root()))
+				expected.add(v.element());
+		List<Integer> actual = new ArrayList<>();
+		for (Integer e : view)
+			actual.add(e);
+		assertEquals(expected, actual);
+		assertEquals(view.size(), new VanEmdeBoasLayout<Integer>(view).size()); // aceita qualquer BinaryTree
+
+		Position<Integer> first = search.select(1);
+		search.insertLeft(first, 1);
+		assertEquals(expected.size() + 1, view.size()); // a visão acompanha a árvore
+		view.replace(first, first.element() - 1);
+		assertEquals(search.select(2).element(), first.element());
+
+		AtomicInteger calls = new AtomicInteger();
+		MappedView<Integer, String> mapped = search.mapView(e -> {
+			calls.incrementAndGet();
+			return "#" + e;
+		});
+		assertEquals(search.size(), mapped.size());
+		assertEquals(0, calls.get());
+		Position<String> root = mapped.root();
+		assertEquals(0, calls.get()); // nada é calculado até element()
+		assertEquals("#" + search.root().element(), root.element());
+		assertEquals(1, calls.get());
+		assertEquals(mapped.left(root), mapped.parent(mapped.left(mapped.left(root))));
+		assertThrows(UnsupportedOperationException.class, () -> mapped.replace(root, "x"));
+		MappedView<Integer, String> other = search.mapView(e -> "#" + e);
+		assertThrows(InvalidPositionException.class, () -> other.left(root)); // posição de outra visão
+
+		MappedView<Integer, Integer> doubled = view.mapView(e -> 2 * e);
+		int sum = 0;
+		for (Integer e : doubled)
+			sum += e;
+		int original = 0;
+		for (Integer e : view)
+			original += e;
+		assertEquals(2 * original, sum);
+		assertThrows(BoundaryViolationException.class, () -> doubled.parent(doubled.root()));
+	}
+
 	@Test
 	void test_buildExpression() {
 		LinkedBinaryTree<String> linkedBinaryTree = new LinkedBinaryTree<String>();
@@ -228,6 +1267,13 @@ class LinkedBinaryTreeTest {
 		LinkedBinaryTree<String> treeExpression = linkedBinaryTree.buildExpression(expression);
 
 		assertEquals(-13.0, linkedBinaryTree.evaluateExpression(treeExpression, treeExpression.root()));
+
+		// Operador sem o filho da esquerda: falha antes de avaliar a direita
+		LinkedBinaryTree<String> oneChild = new LinkedBinaryTree<String>();
+		oneChild.insertRight(oneChild.addRoot("+"), "x");
+		BoundaryViolationException e = assertThrows(BoundaryViolationException.class,
+				() -> oneChild.evaluateExpression(oneChild, oneChild.root()));
+		assertEquals("No left child", e.getMessage());
 	}
 
 	@Test
@@ -249,6 +1295,33 @@ class LinkedBinaryTreeTest {
 		assertEquals("3+1*3/9-5+2-3*7-4+6", consoleOutput);
 	}
 	
+	@Test
+	void testEulerTourPruneAndStop() {
+		LinkedBinaryTree<Integer> search = new LinkedBinaryTree<Integer>().makerBtSearch();
+
+		EulerTour<Integer, Integer> sumOutside = new EulerTour<Integer, Integer>() {
+			protected void visitExternal(Position<Integer> v, TourResult<Integer> r) { r.out = v.element(); }
+			protected void visitLeft(Position<Integer> v, TourResult<Integer> r) {
+				if (v.element() == 31)
+					prune(); // ignora a subárvore de 31
+			}
+			protected void visitRight(Position<Integer> v, TourResult<Integer> r) {
+				r.out = v.element() + (r.left == null ? 0 : r.left) + (r.right == null ? 0 : r.right);
+			}
+		};
+		assertEquals(58 + 31 + 90 + 62 + 75, sumOutside.execute(search));
+		assertEquals(58 + 31 + 90 + 62 + 75, sumOutside.execute(search));
+
+		EulerTour<Integer, Integer> firstAbove40 = new EulerTour<Integer, Integer>() {
+			protected void visitExternal(Position<Integer> v, TourResult<Integer> r) { visitBelow(v, r); }
+			protected void visitBelow(Position<Integer> v, TourResult<Integer> r) {
+				if (v.element() > 40)
+					stop(v.element());
+			}
+		};
+		assertEquals(42, firstAbove40.execute(search));
+	}
+
 	@Test
 	void test_makerBTSearch() {
 		LinkedBinaryTree<Integer> linkedBinaryTree = new LinkedBinaryTree<Integer>();